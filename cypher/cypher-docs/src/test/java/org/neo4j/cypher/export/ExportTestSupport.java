@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.export;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+import org.neo4j.graphdb.schema.IndexDefinition;
+
+/**
+ * Helpers for checking that an export loads back into the graph it was taken from.
+ */
+final class ExportTestSupport
+{
+    private ExportTestSupport()
+    {
+    }
+
+    /**
+     * Runs every statement of an export script that was written without begin and commit commands, each in its own
+     * transaction.
+     */
+    static void replay( GraphDatabaseService db, String script )
+    {
+        for ( String statement : script.split( ";" + System.lineSeparator() ) )
+        {
+            if ( statement.isBlank() )
+            {
+                continue;
+            }
+            try ( Transaction tx = db.beginTx() )
+            {
+                tx.execute( statement ).close();
+                tx.commit();
+            }
+        }
+    }
+
+    /**
+     * Describes a graph independently of its ids: one sorted line per node, with its labels and properties, and per
+     * relationship, with its type and properties and the descriptions of its nodes.
+     */
+    static List<String> describe( GraphDatabaseService db )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            List<String> lines = new ArrayList<>();
+            for ( Node node : tx.getAllNodes() )
+            {
+                lines.add( describe( node ) );
+            }
+            for ( Relationship rel : tx.getAllRelationships() )
+            {
+                lines.add( describe( rel.getStartNode() ) + "-[:" + rel.getType().name() + " " + properties( rel ) + "]->" +
+                        describe( rel.getEndNode() ) );
+            }
+            Collections.sort( lines );
+            return lines;
+        }
+    }
+
+    /**
+     * Describes the indexes and constraints of a graph, leaving out their names.
+     */
+    static List<String> describeSchema( GraphDatabaseService db )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            List<String> lines = new ArrayList<>();
+            for ( IndexDefinition index : tx.schema().getIndexes() )
+            {
+                lines.add( "index " + index.getLabels() + index.getPropertyKeys() + (index.isConstraintIndex() ? " for constraint" : "") );
+            }
+            for ( ConstraintDefinition constraint : tx.schema().getConstraints() )
+            {
+                lines.add( "constraint " + constraint.getConstraintType() + " " + constraint.getLabel().name() + constraint.getPropertyKeys() );
+            }
+            Collections.sort( lines );
+            return lines;
+        }
+    }
+
+    private static String describe( Node node )
+    {
+        List<String> labels = new ArrayList<>();
+        for ( Label label : node.getLabels() )
+        {
+            labels.add( label.name() );
+        }
+        Collections.sort( labels );
+        return "(" + labels + " " + properties( node ) + ")";
+    }
+
+    private static String properties( Entity entity )
+    {
+        Map<String, String> properties = new TreeMap<>();
+        entity.getAllProperties().forEach( ( key, value ) -> properties.put( key, value( value ) ) );
+        return properties.toString();
+    }
+
+    private static String value( Object value )
+    {
+        if ( !value.getClass().isArray() )
+        {
+            return value.getClass().getSimpleName() + " " + value;
+        }
+        List<String> elements = new ArrayList<>();
+        for ( int i = 0; i < Array.getLength( value ); i++ )
+        {
+            elements.add( value( Array.get( value, i ) ) );
+        }
+        return value.getClass().getComponentType().getSimpleName() + elements;
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.export;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.id.IdGeneratorFactory;
+import org.neo4j.internal.id.IdType;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+/**
+ * Exports a whole database, like {@link SubGraphExporter} does for a {@link DatabaseSubGraph}, but splits the node id
+ * space into ranges that are formatted concurrently, each in its own read transaction. A range holds its nodes and the
+ * relationships starting at them, so the output is the same as the serial export's, and no relationship is visited twice.
+ */
+public class ParallelSubGraphExporter
+{
+    private static final String SEGMENT_NAME = "segment-%05d.cypher";
+
+    private final GraphDatabaseAPI db;
+    private final int threads;
+    private final int partitions;
+
+    public ParallelSubGraphExporter( GraphDatabaseAPI db )
+    {
+        this( db, Runtime.getRuntime().availableProcessors() );
+    }
+
+    public ParallelSubGraphExporter( GraphDatabaseAPI db, int threads )
+    {
+        this( db, threads, threads * 4 );
+    }
+
+    public ParallelSubGraphExporter( GraphDatabaseAPI db, int threads, int partitions )
+    {
+        if ( threads < 1 || partitions < 1 )
+        {
+            throw new IllegalArgumentException( "Threads and partitions must be positive, were " + threads + " and " + partitions );
+        }
+        this.db = db;
+        this.threads = threads;
+        this.partitions = partitions;
+    }
+
+    /**
+     * Writes the export as one stream. Node ranges are written as soon as they, and the ones before them, are done, but
+     * relationships are held until all nodes are written.
+     */
+    public void export( PrintWriter out, String begin, String commit )
+    {
+        List<Range> ranges = ranges();
+        List<StringWriter> nodes = new ArrayList<>( ranges.size() );
+        List<StringWriter> relationships = new ArrayList<>( ranges.size() );
+        List<Export> exports = new ArrayList<>( ranges.size() );
+        for ( Range range : ranges )
+        {
+            StringWriter nodeText = new StringWriter();
+            StringWriter relationshipText = new StringWriter();
+            nodes.add( nodeText );
+            relationships.add( relationshipText );
+            exports.add( new Export( range, new PrintWriter( nodeText ), new PrintWriter( relationshipText ) ) );
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Future<Long>> counts = submit( executor, exports );
+            writeSchema( out, begin, commit );
+            long entities = 0;
+            for ( int i = 0; i < counts.size(); i++ )
+            {
+                entities += await( counts.get( i ) );
+                out.write( nodes.get( i ).toString() );
+            }
+            for ( StringWriter text : relationships )
+            {
+                out.write( text.toString() );
+            }
+            writeEnd( out, entities, commit );
+            out.flush();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the export into numbered segment files in {@code directory}, which concatenated in the returned order are the
+     * same as {@link #export(PrintWriter, String, String)}. Workers write their segments straight to disk, so this doesn't
+     * hold the export in memory.
+     */
+    public List<Path> exportSegments( Path directory, String begin, String commit ) throws IOException
+    {
+        Files.createDirectories( directory );
+        List<Range> ranges = ranges();
+        List<Path> segments = new ArrayList<>( ranges.size() * 2 + 2 );
+        for ( int i = 0; i < ranges.size() * 2 + 2; i++ )
+        {
+            segments.add( directory.resolve( String.format( SEGMENT_NAME, i ) ) );
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            try ( PrintWriter out = open( segments.get( 0 ) ) )
+            {
+                writeSchema( out, begin, commit );
+            }
+            List<PrintWriter> writers = new ArrayList<>( ranges.size() * 2 );
+            List<Export> exports = new ArrayList<>( ranges.size() );
+            try
+            {
+                for ( int i = 0; i < ranges.size(); i++ )
+                {
+                    PrintWriter nodes = open( segments.get( 1 + i ) );
+                    writers.add( nodes );
+                    PrintWriter relationships = open( segments.get( 1 + ranges.size() + i ) );
+                    writers.add( relationships );
+                    exports.add( new Export( ranges.get( i ), nodes, relationships ) );
+                }
+                long entities = 0;
+                for ( Future<Long> count : submit( executor, exports ) )
+                {
+                    entities += await( count );
+                }
+                try ( PrintWriter out = open( segments.get( segments.size() - 1 ) ) )
+                {
+                    writeEnd( out, entities, commit );
+                }
+            }
+            finally
+            {
+                writers.forEach( PrintWriter::close );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return segments;
+    }
+
+    /*
+     * The ranges cover every id the node id generator has handed out. Its high id comes from the kernel-internal
+     * IdGeneratorFactory, since the public API has no way to ask for it, so this has to follow that class when it changes.
+     * A node count can't replace it, because deleted nodes leave gaps and the highest ids can be far above the count.
+     */
+    private List<Range> ranges()
+    {
+        long highId = db.getDependencyResolver().resolveDependency( IdGeneratorFactory.class ).get( IdType.NODE ).getHighId();
+        long size = Math.max( 1, (highId + partitions - 1) / partitions );
+        List<Range> ranges = new ArrayList<>( partitions );
+        for ( long from = 0; from < highId; from += size )
+        {
+            ranges.add( new Range( from, Math.min( highId, from + size ) ) );
+        }
+        return ranges;
+    }
+
+    private List<Future<Long>> submit( ExecutorService executor, List<Export> exports )
+    {
+        List<Future<Long>> counts = new ArrayList<>( exports.size() );
+        for ( Export export : exports )
+        {
+            counts.add( executor.submit( export::call ) );
+        }
+        return counts;
+    }
+
+    private void writeSchema( PrintWriter out, String begin, String commit )
+    {
+        try ( Transaction tx = db.beginTx() )
+        {
+            SubGraphExporter exporter = new SubGraphExporter( DatabaseSubGraph.from( tx ) );
+            exporter.output( out, begin );
+            exporter.appendIndexes( out );
+            exporter.appendConstraints( out );
+            exporter.output( out, commit, begin );
+        }
+    }
+
+    private static void writeEnd( PrintWriter out, long entities, String commit )
+    {
+        if ( entities > 0 )
+        {
+            out.println( ";" );
+        }
+        if ( commit != null )
+        {
+            out.println( commit );
+        }
+    }
+
+    private static PrintWriter open( Path segment ) throws IOException
+    {
+        return new PrintWriter( Files.newBufferedWriter( segment, StandardCharsets.UTF_8 ) );
+    }
+
+    private static long await( Future<Long> count )
+    {
+        try
+        {
+            return count.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        }
+        catch ( ExecutionException e )
+        {
+            if ( e.getCause() instanceof UncheckedIOException )
+            {
+                throw (UncheckedIOException) e.getCause();
+            }
+            throw new RuntimeException( e.getCause() );
+        }
+    }
+
+    private static class Range
+    {
+        private final long from;
+        private final long to;
+
+        Range( long from, long to )
+        {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /*
+     * Formats the nodes of one id range and their outgoing relationships, returning how many entities it wrote.
+     */
+    private class Export
+    {
+        private final Range range;
+        private final PrintWriter nodes;
+        private final PrintWriter relationships;
+
+        Export( Range range, PrintWriter nodes, PrintWriter relationships )
+        {
+            this.range = range;
+            this.nodes = nodes;
+            this.relationships = relationships;
+        }
+
+        long call()
+        {
+            long entities = 0;
+            try ( Transaction tx = db.beginTx() )
+            {
+                SubGraphExporter exporter = new SubGraphExporter( DatabaseSubGraph.from( tx ) );
+                for ( long id = range.from; id < range.to; id++ )
+                {
+                    Node node;
+                    try
+                    {
+                        node = tx.getNodeById( id );
+                    }
+                    catch ( NotFoundException e )
+                    {
+                        continue;
+                    }
+                    exporter.appendNode( nodes, node );
+                    entities++;
+                    for ( Relationship rel : node.getRelationships( Direction.OUTGOING ) )
+                    {
+                        exporter.appendRelationship( relationships, rel );
+                        entities++;
+                    }
+                }
+            }
+            nodes.flush();
+            relationships.flush();
+            if ( nodes.checkError() || relationships.checkError() )
+            {
+                throw new UncheckedIOException( new IOException( "Could not write the export of nodes " + range.from + " to " + range.to ) );
+            }
+            return entities;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.export;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.test.TestDatabaseManagementServiceBuilder;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAME;
+
+public class ParallelSubGraphExporterTest
+{
+    private DatabaseManagementService managementService;
+    private GraphDatabaseAPI db;
+
+    @Before
+    public void setUp()
+    {
+        managementService = new TestDatabaseManagementServiceBuilder().impermanent().build();
+        db = (GraphDatabaseAPI) managementService.database( DEFAULT_DATABASE_NAME );
+        try ( Transaction tx = db.beginTx() )
+        {
+            tx.schema().indexFor( Label.label( "Person" ) ).on( "name" ).create();
+            tx.commit();
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        managementService.shutdown();
+    }
+
+    @Test
+    public void exportOfAnEmptyGraphIsTheSameAsTheSerialExport() throws IOException
+    {
+        assertSameAsSerialExport();
+    }
+
+    @Test
+    public void exportOfAGraphWithDeletedNodesIsTheSameAsTheSerialExport() throws IOException
+    {
+        // given nodes at the start, in the middle and at the end of the id space are gone, with their relationships
+        db.executeTransactionally( "UNWIND range(0, 99) AS i CREATE (:Person {name: 'Person ' + i, number: i})" );
+        db.executeTransactionally( "MATCH (a:Person), (b:Person) WHERE b.number = (a.number * 7) % 100 CREATE (a)-[:KNOWS {since: a.number}]->(b)" );
+        db.executeTransactionally( "MATCH (n:Person) WHERE n.number < 5 OR n.number % 10 = 3 OR n.number >= 95 DETACH DELETE n" );
+
+        assertSameAsSerialExport();
+    }
+
+    private void assertSameAsSerialExport() throws IOException
+    {
+        String serial = serialExport();
+        for ( int partitions : new int[]{1, 3, 7, 200} )
+        {
+            ParallelSubGraphExporter exporter = new ParallelSubGraphExporter( db, 4, partitions );
+
+            StringWriter text = new StringWriter();
+            PrintWriter out = new PrintWriter( text );
+            exporter.export( out, ":begin", ":commit" );
+            assertThat( partitions + " partitions", text.toString(), equalTo( serial ) );
+
+            Path directory = Files.createTempDirectory( "segments" );
+            StringBuilder segments = new StringBuilder();
+            for ( Path segment : exporter.exportSegments( directory, ":begin", ":commit" ) )
+            {
+                segments.append( new String( Files.readAllBytes( segment ), StandardCharsets.UTF_8 ) );
+                Files.delete( segment );
+            }
+            Files.delete( directory );
+            assertThat( partitions + " partitions in segments", segments.toString(), equalTo( serial ) );
+        }
+    }
+
+    private String serialExport()
+    {
+        StringWriter text = new StringWriter();
+        try ( Transaction tx = db.beginTx() )
+        {
+            PrintWriter out = new PrintWriter( text );
+            new SubGraphExporter( DatabaseSubGraph.from( tx ) ).export( out, ":begin", ":commit" );
+            out.flush();
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.export;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Layout of the binary snapshots written by {@link SubGraphSnapshotWriter} and read by {@link SubGraphSnapshotReader}.
+ * <p>
+ * After the uncompressed {@link #MAGIC} and {@link #VERSION}, the rest of the file is one deflate stream of records, each
+ * starting with a record tag: indexes and constraints first, then nodes, then relationships, and finally {@link #END}.
+ * Labels, relationship types and property keys are written as dictionary references: a token is written in full the first
+ * time it is used, and after that as its position in the dictionary. Counts, ids and lengths are unsigned var-longs, and
+ * every string, array and property map is prefixed with its length.
+ * <p>
+ * Temporal values are written as the numbers {@code java.time} rebuilds them from: dates as epoch days, times as nanos
+ * of the day followed by the offset in seconds for {@link #TIME}, date times as epoch seconds and nanos followed by the
+ * zone id for {@link #DATE_TIME}, and durations as months, days, seconds and nanos. Points are their CRS code followed by
+ * their coordinates.
+ */
+final class SnapshotFormat
+{
+    static final int MAGIC = 0x4E34_5350; // "N4SP"
+    static final short VERSION = 2;
+
+    // Record tags
+    static final byte INDEX = 1;
+    static final byte CONSTRAINT = 2;
+    static final byte NODE = 3;
+    static final byte RELATIONSHIP = 4;
+    static final byte END = 0;
+
+    // Property value tags, an array tag is its element tag plus ARRAY
+    static final byte BOOLEAN = 1;
+    static final byte BYTE = 2;
+    static final byte SHORT = 3;
+    static final byte CHAR = 4;
+    static final byte INT = 5;
+    static final byte LONG = 6;
+    static final byte FLOAT = 7;
+    static final byte DOUBLE = 8;
+    static final byte STRING = 9;
+    static final byte DATE = 10;
+    static final byte LOCAL_TIME = 11;
+    static final byte TIME = 12;
+    static final byte LOCAL_DATE_TIME = 13;
+    static final byte DATE_TIME = 14;
+    static final byte DURATION = 15;
+    static final byte POINT = 16;
+    static final byte ARRAY = 32;
+
+    private SnapshotFormat()
+    {
+    }
+
+    static void writeVarLong( DataOutput out, long value ) throws IOException
+    {
+        while ( (value & ~0x7FL) != 0 )
+        {
+            out.writeByte( (int) ((value & 0x7F) | 0x80) );
+            value >>>= 7;
+        }
+        out.writeByte( (int) value );
+    }
+
+    static long readVarLong( DataInput in ) throws IOException
+    {
+        long value = 0;
+        for ( int shift = 0; shift < 64; shift += 7 )
+        {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ( (b & 0x80) == 0 )
+            {
+                return value;
+            }
+        }
+        throw new IOException( "Malformed variable length number in snapshot" );
+    }
+
+    static int readLength( DataInput in ) throws IOException
+    {
+        long length = readVarLong( in );
+        if ( length > Integer.MAX_VALUE )
+        {
+            throw new IOException( "Length " + length + " in snapshot is too large" );
+        }
+        return (int) length;
+    }
+}
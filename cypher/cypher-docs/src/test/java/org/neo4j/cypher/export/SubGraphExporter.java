@@ -22,11 +22,17 @@ package org.neo4j.cypher.export;
 import java.io.PrintWriter;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Entity;
@@ -36,13 +42,18 @@ import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.schema.ConstraintDefinition;
 import org.neo4j.graphdb.schema.ConstraintType;
 import org.neo4j.graphdb.schema.IndexDefinition;
-import org.neo4j.internal.helpers.collection.Iterables;
 
 import static org.neo4j.internal.helpers.collection.Iterables.single;
 
 public class SubGraphExporter
 {
+    static final String IMPORT_LABEL = "UNIQUE IMPORT LABEL";
+    static final String IMPORT_ID = "UNIQUE IMPORT ID";
+
+    static final int MAX_KEY_ORDERS = 1024;
+
     private final SubGraph graph;
+    private final Map<Set<String>, KeyOrder> keyOrders = new HashMap<>();
 
     public SubGraphExporter( SubGraph graph )
     {
@@ -69,7 +80,122 @@ public class SubGraphExporter
         output( out, commit );
     }
 
-    private void output( PrintWriter out, String ... commands )
+    /**
+     * Exports the graph as {@code UNWIND [...] AS row CREATE ...} statements of at most {@code batchSize} nodes with the
+     * same labels, or relationships of the same type, each between {@code begin} and {@code commit} when those are given,
+     * so that replaying the export doesn't need one huge transaction. Relationships find their nodes again through a
+     * temporary, uniquely constrained label and property, which are removed at the end.
+     */
+    public void exportBatched( PrintWriter out, int batchSize, String begin, String commit )
+    {
+        if ( batchSize < 1 )
+        {
+            throw new IllegalArgumentException( "Batch size must be positive, was " + batchSize );
+        }
+        output( out, begin );
+        appendIndexes( out );
+        appendConstraints( out );
+        out.println( "create constraint on (n:" + quote( IMPORT_LABEL ) + ") assert n." + quote( IMPORT_ID ) + " is unique;" );
+        output( out, commit );
+
+        Batches batches = new Batches( out, batchSize, begin, commit );
+        long nodes = 0;
+        for ( Node node : graph.getNodes() )
+        {
+            String labels = labelString( node );
+            batches.add( "create " + importNode( "n", labels, "row._id" ) + " set n += row.properties",
+                    "{_id:" + node.getId() + ", properties:" + formatProperties( node ) + "}" );
+            nodes++;
+        }
+        batches.flush();
+        for ( Node node : graph.getNodes() )
+        {
+            for ( Relationship rel : node.getRelationships( Direction.OUTGOING ) )
+            {
+                batches.add( "match " + importNode( "start", "", "row.start" ) + ", " + importNode( "end", "", "row.end" ) +
+                                " create (start)-[r:" + quote( rel.getType().name() ) + "]->(end) set r += row.properties",
+                        "{start:" + rel.getStartNodeId() + ", end:" + rel.getEndNodeId() + ", properties:" + formatProperties( rel ) + "}" );
+            }
+        }
+        batches.flush();
+
+        for ( long removed = 0; removed < nodes; removed += batchSize )
+        {
+            output( out, begin );
+            out.println( "match (n:" + quote( IMPORT_LABEL ) + ") with n limit " + batchSize +
+                    " remove n:" + quote( IMPORT_LABEL ) + ", n." + quote( IMPORT_ID ) + ";" );
+            output( out, commit );
+        }
+        output( out, begin );
+        out.println( "drop constraint on (n:" + quote( IMPORT_LABEL ) + ") assert n." + quote( IMPORT_ID ) + " is unique;" );
+        output( out, commit );
+    }
+
+    private static String importNode( String variable, String labels, String id )
+    {
+        return "(" + variable + ":" + quote( IMPORT_LABEL ) + labels + " {" + quote( IMPORT_ID ) + ": " + id + "})";
+    }
+
+    /*
+     * Rows waiting to be written, per statement, so that each UNWIND only creates one shape of node or relationship.
+     */
+    private class Batches
+    {
+        private final PrintWriter out;
+        private final int batchSize;
+        private final String begin;
+        private final String commit;
+        private final Map<String, List<String>> rowsByStatement = new LinkedHashMap<>();
+
+        Batches( PrintWriter out, int batchSize, String begin, String commit )
+        {
+            this.out = out;
+            this.batchSize = batchSize;
+            this.begin = begin;
+            this.commit = commit;
+        }
+
+        void add( String statement, String row )
+        {
+            List<String> rows = rowsByStatement.computeIfAbsent( statement, ignored -> new ArrayList<>( batchSize ) );
+            rows.add( row );
+            if ( rows.size() == batchSize )
+            {
+                write( statement, rows );
+            }
+        }
+
+        void flush()
+        {
+            rowsByStatement.forEach( this::write );
+            rowsByStatement.clear();
+        }
+
+        private void write( String statement, List<String> rows )
+        {
+            if ( rows.isEmpty() )
+            {
+                return;
+            }
+            output( out, begin );
+            out.print( "unwind [" );
+            for ( int i = 0; i < rows.size(); i++ )
+            {
+                if ( i > 0 )
+                {
+                    out.print( ", " );
+                }
+                out.print( rows.get( i ) );
+            }
+            out.print( "] as row " );
+            out.print( statement );
+            out.println( ";" );
+            output( out, commit );
+            rows.clear();
+        }
+    }
+
+    void output( PrintWriter out, String ... commands )
     {
         for ( String command : commands )
         {
@@ -175,12 +301,12 @@ public class SubGraphExporter
         return result.toString();
     }
 
-    private String identifier( Node node )
+    private String identifier( long nodeId )
     {
-        return "_" + node.getId();
+        return "_" + nodeId;
     }
 
-    private void appendIndexes( PrintWriter out )
+    void appendIndexes( PrintWriter out )
     {
         for ( String line : exportIndexes() )
         {
@@ -189,7 +315,7 @@ public class SubGraphExporter
         }
     }
 
-    private void appendConstraints( PrintWriter out )
+    void appendConstraints( PrintWriter out )
     {
         for ( String line : exportConstraints() )
         {
@@ -212,15 +338,15 @@ public class SubGraphExporter
         return relationships;
     }
 
-    private void appendRelationship( PrintWriter out, Relationship rel )
+    void appendRelationship( PrintWriter out, Relationship rel )
     {
         out.print( "create (" );
-        out.print( identifier( rel.getStartNode() ) );
+        out.print( identifier( rel.getStartNodeId() ) );
         out.print( ")-[:" );
         out.print( quote( rel.getType().name() ) );
         formatProperties( out, rel );
         out.print( "]->(" );
-        out.print( identifier( rel.getEndNode() ) );
+        out.print( identifier( rel.getEndNodeId() ) );
         out.println( ")" );
     }
 
@@ -235,10 +361,10 @@ public class SubGraphExporter
         return nodes;
     }
 
-    private void appendNode( PrintWriter out, Node node )
+    void appendNode( PrintWriter out, Node node )
     {
         out.print( "create (" );
-        out.print( identifier( node ) );
+        out.print( identifier( node.getId() ) );
         String labels = labelString( node );
         if ( !labels.isEmpty() )
         {
@@ -250,31 +376,66 @@ public class SubGraphExporter
 
     private void formatProperties( PrintWriter out, Entity entity )
     {
-        if ( !entity.getPropertyKeys().iterator().hasNext() )
+        Map<String, Object> properties = entity.getAllProperties();
+        if ( properties.isEmpty() )
         {
             return;
         }
         out.print( " " );
-        final String propertyString = formatProperties( entity );
-        out.print( propertyString );
+        out.print( formatProperties( properties ) );
     }
 
     private String formatProperties( Entity entity )
     {
-        StringBuilder result = new StringBuilder();
-        List<String> keys = Iterables.asList( entity.getPropertyKeys() );
-        Collections.sort( keys );
-        for ( String prop : keys )
+        return formatProperties( entity.getAllProperties() );
+    }
+
+    private String formatProperties( Map<String, Object> properties )
+    {
+        StringBuilder result = new StringBuilder( "{" );
+        KeyOrder order = keyOrder( properties.keySet() );
+        for ( int i = 0; i < order.keys.length; i++ )
         {
-            if ( result.length() > 0 )
+            result.append( order.prefixes[i] );
+            result.append( toString( properties.get( order.keys[i] ) ) );
+        }
+        return result.append( '}' ).toString();
+    }
+
+    /*
+     * Most entities of a graph share a handful of key sets, so the sorted and quoted keys are worked out once per key set.
+     */
+    private KeyOrder keyOrder( Set<String> keys )
+    {
+        KeyOrder order = keyOrders.get( keys );
+        if ( order == null )
+        {
+            order = new KeyOrder( keys );
+            if ( keyOrders.size() < MAX_KEY_ORDERS )
             {
-                result.append( ", " );
+                keyOrders.put( order.keySet, order );
+            }
+        }
+        return order;
+    }
+
+    private static class KeyOrder
+    {
+        private final Set<String> keySet;
+        private final String[] keys;
+        private final String[] prefixes;
+
+        KeyOrder( Set<String> keys )
+        {
+            this.keySet = new HashSet<>( keys );
+            this.keys = keys.toArray( new String[0] );
+            Arrays.sort( this.keys );
+            this.prefixes = new String[this.keys.length];
+            for ( int i = 0; i < this.keys.length; i++ )
+            {
+                prefixes[i] = (i > 0 ? ", " : "") + quote( this.keys[i] ) + ':';
             }
-            result.append( quote( prop ) ).append( ':' );
-            Object value = entity.getProperty( prop );
-            result.append( toString( value ) );
         }
-        return "{" + result + "}";
     }
 
     private String toString( Iterator<?> iterator )
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.export;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestDatabaseManagementServiceBuilder;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAME;
+import static org.neo4j.cypher.export.ExportTestSupport.describe;
+import static org.neo4j.cypher.export.ExportTestSupport.describeSchema;
+import static org.neo4j.cypher.export.ExportTestSupport.replay;
+
+public class SubGraphExporterTest
+{
+    private static final String[][] KEY_SETS = {{"name", "age"}, {"name", "age", "email"}, {"b", "a", "c", "d"}};
+
+    private DatabaseManagementService sourceService;
+    private DatabaseManagementService targetService;
+    private GraphDatabaseService source;
+    private GraphDatabaseService target;
+
+    @Before
+    public void setUp()
+    {
+        sourceService = new TestDatabaseManagementServiceBuilder().impermanent().build();
+        targetService = new TestDatabaseManagementServiceBuilder().impermanent().build();
+        source = sourceService.database( DEFAULT_DATABASE_NAME );
+        target = targetService.database( DEFAULT_DATABASE_NAME );
+
+        try ( Transaction tx = source.beginTx() )
+        {
+            tx.schema().indexFor( Label.label( "Person" ) ).on( "name" ).create();
+            tx.schema().constraintFor( Label.label( "Company" ) ).assertPropertyIsUnique( "name" ).create();
+            tx.commit();
+        }
+        // four people fill two batches of two exactly, so the last node batch ends right before the relationships
+        source.executeTransactionally( "UNWIND range(1, 4) AS i CREATE (:Person {name: 'Person \"' + i + '\"', age: i})" );
+        source.executeTransactionally( "CREATE (:Company {name: 'Acme', tags: ['a', 'b\\\\']}), (), (:Person:Admin {weights: [1.5, 2.5]})" );
+        source.executeTransactionally( "MATCH (a:Person), (b:Person) WHERE a.age + 1 = b.age CREATE (a)-[:KNOWS {since: a.age}]->(b)" );
+        source.executeTransactionally( "MATCH (p:Person {age: 1}), (c:Company) CREATE (p)-[:WORKS_AT]->(c), (c)-[:EMPLOYS]->(p)" );
+    }
+
+    @After
+    public void tearDown()
+    {
+        sourceService.shutdown();
+        targetService.shutdown();
+    }
+
+    @Test
+    public void exportLoadsBackIntoTheSameGraph()
+    {
+        replay( target, export( SubGraphExporter::export ) );
+
+        assertThat( describe( target ), equalTo( describe( source ) ) );
+        assertThat( describeSchema( target ), equalTo( describeSchema( source ) ) );
+    }
+
+    @Test
+    public void batchedExportLoadsBackIntoTheSameGraph()
+    {
+        for ( int batchSize : new int[]{1, 2, 3, 1000} )
+        {
+            clearTarget();
+
+            replay( target, export( ( exporter, out ) -> exporter.exportBatched( out, batchSize, null, null ) ) );
+
+            assertThat( "batch size " + batchSize, describe( target ), equalTo( describe( source ) ) );
+            assertThat( "batch size " + batchSize, describeSchema( target ), equalTo( describeSchema( source ) ) );
+        }
+    }
+
+    @Test
+    public void batchedExportRemovesTheImportLabelAndId()
+    {
+        replay( target, export( ( exporter, out ) -> exporter.exportBatched( out, 2, null, null ) ) );
+
+        try ( Transaction tx = target.beginTx() )
+        {
+            assertFalse( tx.findNodes( Label.label( SubGraphExporter.IMPORT_LABEL ) ).hasNext() );
+            assertFalse( hasImportId( tx ) );
+        }
+        assertThat( describeSchema( target ), not( hasItem( "constraint UNIQUENESS " + SubGraphExporter.IMPORT_LABEL + "[" +
+                SubGraphExporter.IMPORT_ID + "]" ) ) );
+    }
+
+    @Test
+    public void batchedExportWritesEachBatchBetweenBeginAndCommit()
+    {
+        String script = export( ( exporter, out ) -> exporter.exportBatched( out, 2, ":begin", ":commit" ) );
+
+        String[] lines = script.split( System.lineSeparator() );
+        boolean open = false;
+        for ( String line : lines )
+        {
+            if ( line.equals( ":begin" ) )
+            {
+                assertFalse( "nested :begin in" + System.lineSeparator() + script, open );
+                open = true;
+            }
+            else if ( line.equals( ":commit" ) )
+            {
+                open = false;
+            }
+            else
+            {
+                assertThat( "statement outside a transaction: " + line, open, equalTo( true ) );
+            }
+        }
+        assertFalse( open );
+    }
+
+    @Test
+    public void nodesSharingKeySetsHaveTheirKeysSorted()
+    {
+        // given nodes that reuse a handful of key sets, given in different orders
+        try ( Transaction tx = target.beginTx() )
+        {
+            for ( int i = 0; i < 20; i++ )
+            {
+                Node node = tx.createNode();
+                String[] keys = KEY_SETS[i % KEY_SETS.length];
+                for ( int k = 0; k < keys.length; k++ )
+                {
+                    node.setProperty( keys[(k + i) % keys.length], (long) i * 10 + k );
+                }
+            }
+            tx.commit();
+        }
+
+        assertThat( exportNodes( target ), equalTo( sortedKeysFormatting( target ) ) );
+    }
+
+    @Test
+    public void keySetsBeyondTheCachedOnesHaveTheirKeysSorted()
+    {
+        // given more distinct key sets than the exporter caches, then nodes reusing both cached and uncached ones
+        try ( Transaction tx = target.beginTx() )
+        {
+            for ( int round = 0; round < 2; round++ )
+            {
+                for ( int i = 0; i < SubGraphExporter.MAX_KEY_ORDERS + 100; i++ )
+                {
+                    Node node = tx.createNode();
+                    node.setProperty( "z" + i, (long) i );
+                    node.setProperty( "a", (long) round );
+                }
+            }
+            tx.commit();
+        }
+
+        assertThat( exportNodes( target ), equalTo( sortedKeysFormatting( target ) ) );
+    }
+
+    private static List<String> exportNodes( GraphDatabaseService db )
+    {
+        StringWriter text = new StringWriter();
+        try ( Transaction tx = db.beginTx() )
+        {
+            PrintWriter out = new PrintWriter( text );
+            new SubGraphExporter( DatabaseSubGraph.from( tx ) ).export( out );
+            out.flush();
+        }
+        List<String> lines = new ArrayList<>( Arrays.asList( text.toString().split( System.lineSeparator() ) ) );
+        lines.remove( ";" );
+        return lines;
+    }
+
+    /*
+     * How the exporter formats a node without labels whose properties are all longs, built without any caching.
+     */
+    private static List<String> sortedKeysFormatting( GraphDatabaseService db )
+    {
+        List<String> lines = new ArrayList<>();
+        try ( Transaction tx = db.beginTx() )
+        {
+            for ( Node node : tx.getAllNodes() )
+            {
+                StringJoiner properties = new StringJoiner( ", ", " {", "}" );
+                new TreeMap<>( node.getAllProperties() ).forEach( ( key, value ) -> properties.add( "`" + key + "`:" + value ) );
+                lines.add( "create (_" + node.getId() + properties + ")" );
+            }
+        }
+        return lines;
+    }
+
+    private boolean hasImportId( Transaction tx )
+    {
+        return tx.getAllNodes().stream().anyMatch( node -> node.hasProperty( SubGraphExporter.IMPORT_ID ) );
+    }
+
+    private void clearTarget()
+    {
+        targetService.shutdown();
+        targetService = new TestDatabaseManagementServiceBuilder().impermanent().build();
+        target = targetService.database( DEFAULT_DATABASE_NAME );
+    }
+
+    private String export( BiConsumer<SubGraphExporter, PrintWriter> export )
+    {
+        StringWriter text = new StringWriter();
+        try ( Transaction tx = source.beginTx() )
+        {
+            PrintWriter out = new PrintWriter( text );
+            export.accept( new SubGraphExporter( DatabaseSubGraph.from( tx ) ), out );
+            out.flush();
+        }
+        return text.toString();
+    }
+}
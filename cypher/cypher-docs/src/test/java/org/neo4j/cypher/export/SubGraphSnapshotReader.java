@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.export;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.collections.api.map.primitive.MutableLongLongMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.DurationValue;
+import org.neo4j.values.storable.PointValue;
+import org.neo4j.values.storable.Values;
+
+import static org.neo4j.cypher.export.SnapshotFormat.ARRAY;
+import static org.neo4j.cypher.export.SnapshotFormat.BOOLEAN;
+import static org.neo4j.cypher.export.SnapshotFormat.BYTE;
+import static org.neo4j.cypher.export.SnapshotFormat.CHAR;
+import static org.neo4j.cypher.export.SnapshotFormat.CONSTRAINT;
+import static org.neo4j.cypher.export.SnapshotFormat.DATE;
+import static org.neo4j.cypher.export.SnapshotFormat.DATE_TIME;
+import static org.neo4j.cypher.export.SnapshotFormat.DOUBLE;
+import static org.neo4j.cypher.export.SnapshotFormat.DURATION;
+import static org.neo4j.cypher.export.SnapshotFormat.END;
+import static org.neo4j.cypher.export.SnapshotFormat.FLOAT;
+import static org.neo4j.cypher.export.SnapshotFormat.INDEX;
+import static org.neo4j.cypher.export.SnapshotFormat.INT;
+import static org.neo4j.cypher.export.SnapshotFormat.LOCAL_DATE_TIME;
+import static org.neo4j.cypher.export.SnapshotFormat.LOCAL_TIME;
+import static org.neo4j.cypher.export.SnapshotFormat.LONG;
+import static org.neo4j.cypher.export.SnapshotFormat.MAGIC;
+import static org.neo4j.cypher.export.SnapshotFormat.NODE;
+import static org.neo4j.cypher.export.SnapshotFormat.POINT;
+import static org.neo4j.cypher.export.SnapshotFormat.RELATIONSHIP;
+import static org.neo4j.cypher.export.SnapshotFormat.SHORT;
+import static org.neo4j.cypher.export.SnapshotFormat.STRING;
+import static org.neo4j.cypher.export.SnapshotFormat.TIME;
+import static org.neo4j.cypher.export.SnapshotFormat.VERSION;
+import static org.neo4j.cypher.export.SnapshotFormat.readLength;
+import static org.neo4j.cypher.export.SnapshotFormat.readVarLong;
+
+/**
+ * Loads a snapshot written by {@link SubGraphSnapshotWriter} into an empty database. Nodes and relationships are created
+ * in transactions of {@link #BATCH_SIZE} entities, and indexes and constraints only once all data is in, so that they are
+ * populated once instead of being updated for every write.
+ */
+public class SubGraphSnapshotReader
+{
+    static final int BATCH_SIZE = 10_000;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final GraphDatabaseService db;
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Label> labels = new HashMap<>();
+    private final Map<String, RelationshipType> types = new HashMap<>();
+
+    public SubGraphSnapshotReader( GraphDatabaseService db )
+    {
+        this.db = db;
+    }
+
+    public void read( InputStream input ) throws IOException
+    {
+        dictionary.clear();
+        DataInputStream header = new DataInputStream( input );
+        if ( header.readInt() != MAGIC )
+        {
+            throw new IOException( "Not a graph snapshot" );
+        }
+        short version = header.readShort();
+        if ( version != VERSION )
+        {
+            throw new IOException( "Unsupported graph snapshot version " + version + ", expected " + VERSION );
+        }
+        try ( Transaction tx = db.beginTx() )
+        {
+            if ( tx.getAllNodes().iterator().hasNext() )
+            {
+                throw new IllegalStateException( "Graph snapshots can only be loaded into an empty database" );
+            }
+        }
+
+        Inflater inflater = new Inflater();
+        try
+        {
+            DataInputStream in = new DataInputStream( new BufferedInputStream( new InflaterInputStream( input, inflater, BUFFER_SIZE ), BUFFER_SIZE ) );
+            readRecords( in );
+        }
+        finally
+        {
+            inflater.end();
+        }
+    }
+
+    private void readRecords( DataInputStream in ) throws IOException
+    {
+        List<String[]> indexes = new ArrayList<>();
+        List<String[]> constraints = new ArrayList<>();
+        MutableLongLongMap nodeIds = new LongLongHashMap();
+        Transaction tx = db.beginTx();
+        try
+        {
+            int written = 0;
+            for ( byte record = in.readByte(); record != END; record = in.readByte() )
+            {
+                switch ( record )
+                {
+                case INDEX:
+                    indexes.add( new String[]{readToken( in ), readToken( in )} );
+                    break;
+                case CONSTRAINT:
+                    constraints.add( new String[]{readToken( in ), readToken( in )} );
+                    break;
+                case NODE:
+                    long id = readVarLong( in );
+                    int labelCount = readLength( in );
+                    Label[] nodeLabels = new Label[labelCount];
+                    for ( int i = 0; i < labelCount; i++ )
+                    {
+                        nodeLabels[i] = labels.computeIfAbsent( readToken( in ), Label::label );
+                    }
+                    Node node = tx.createNode( nodeLabels );
+                    nodeIds.put( id, node.getId() );
+                    readProperties( in, node );
+                    break;
+                case RELATIONSHIP:
+                    Node start = tx.getNodeById( nodeId( nodeIds, readVarLong( in ) ) );
+                    Node end = tx.getNodeById( nodeId( nodeIds, readVarLong( in ) ) );
+                    RelationshipType type = types.computeIfAbsent( readToken( in ), RelationshipType::withName );
+                    readProperties( in, start.createRelationshipTo( end, type ) );
+                    break;
+                default:
+                    throw new IOException( "Unknown record " + record + " in graph snapshot" );
+                }
+                if ( (record == NODE || record == RELATIONSHIP) && ++written % BATCH_SIZE == 0 )
+                {
+                    tx.commit();
+                    tx.close();
+                    tx = db.beginTx();
+                }
+            }
+            tx.commit();
+        }
+        finally
+        {
+            tx.close();
+        }
+
+        try ( Transaction schemaTx = db.beginTx() )
+        {
+            for ( String[] index : indexes )
+            {
+                schemaTx.schema().indexFor( Label.label( index[0] ) ).on( index[1] ).create();
+            }
+            for ( String[] constraint : constraints )
+            {
+                schemaTx.schema().constraintFor( Label.label( constraint[0] ) ).assertPropertyIsUnique( constraint[1] ).create();
+            }
+            schemaTx.commit();
+        }
+        try ( Transaction schemaTx = db.beginTx() )
+        {
+            schemaTx.schema().awaitIndexesOnline( 10, TimeUnit.MINUTES );
+        }
+    }
+
+    private static long nodeId( MutableLongLongMap nodeIds, long snapshotId ) throws IOException
+    {
+        if ( !nodeIds.containsKey( snapshotId ) )
+        {
+            throw new IOException( "Relationship in graph snapshot refers to missing node " + snapshotId );
+        }
+        return nodeIds.get( snapshotId );
+    }
+
+    private String readToken( DataInputStream in ) throws IOException
+    {
+        int position = readLength( in );
+        if ( position == 0 )
+        {
+            String token = readString( in );
+            dictionary.add( token );
+            return token;
+        }
+        if ( position > dictionary.size() )
+        {
+            throw new IOException( "Unknown token " + position + " in graph snapshot" );
+        }
+        return dictionary.get( position - 1 );
+    }
+
+    private void readProperties( DataInputStream in, Entity entity ) throws IOException
+    {
+        int count = readLength( in );
+        for ( int i = 0; i < count; i++ )
+        {
+            String key = readToken( in );
+            entity.setProperty( key, readValue( in ) );
+        }
+    }
+
+    private static String readString( DataInputStream in ) throws IOException
+    {
+        byte[] bytes = new byte[readLength( in )];
+        in.readFully( bytes );
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+
+    private static Object readValue( DataInputStream in ) throws IOException
+    {
+        byte type = in.readByte();
+        if ( type < ARRAY )
+        {
+            return readScalar( in, type );
+        }
+        int length = readLength( in );
+        switch ( type - ARRAY )
+        {
+        case BOOLEAN:
+            boolean[] booleans = new boolean[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                booleans[i] = in.readBoolean();
+            }
+            return booleans;
+        case BYTE:
+            byte[] bytes = new byte[length];
+            in.readFully( bytes );
+            return bytes;
+        case SHORT:
+            short[] shorts = new short[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                shorts[i] = in.readShort();
+            }
+            return shorts;
+        case CHAR:
+            char[] chars = new char[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                chars[i] = in.readChar();
+            }
+            return chars;
+        case INT:
+            int[] ints = new int[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                ints[i] = in.readInt();
+            }
+            return ints;
+        case LONG:
+            long[] longs = new long[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                longs[i] = in.readLong();
+            }
+            return longs;
+        case FLOAT:
+            float[] floats = new float[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                floats[i] = in.readFloat();
+            }
+            return floats;
+        case DOUBLE:
+            double[] doubles = new double[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                doubles[i] = in.readDouble();
+            }
+            return doubles;
+        case STRING:
+            String[] strings = new String[length];
+            for ( int i = 0; i < length; i++ )
+            {
+                strings[i] = readString( in );
+            }
+            return strings;
+        case DATE:
+            return readScalars( in, type - ARRAY, new LocalDate[length] );
+        case LOCAL_TIME:
+            return readScalars( in, type - ARRAY, new LocalTime[length] );
+        case TIME:
+            return readScalars( in, type - ARRAY, new OffsetTime[length] );
+        case LOCAL_DATE_TIME:
+            return readScalars( in, type - ARRAY, new LocalDateTime[length] );
+        case DATE_TIME:
+            return readScalars( in, type - ARRAY, new ZonedDateTime[length] );
+        case DURATION:
+            return readScalars( in, type - ARRAY, new DurationValue[length] );
+        case POINT:
+            return readScalars( in, type - ARRAY, new PointValue[length] );
+        default:
+            throw new IOException( "Unknown property value type " + type + " in graph snapshot" );
+        }
+    }
+
+    private static Object[] readScalars( DataInputStream in, int type, Object[] values ) throws IOException
+    {
+        for ( int i = 0; i < values.length; i++ )
+        {
+            values[i] = readScalar( in, (byte) type );
+        }
+        return values;
+    }
+
+    private static Object readScalar( DataInputStream in, byte type ) throws IOException
+    {
+        switch ( type )
+        {
+        case BOOLEAN:
+            return in.readBoolean();
+        case BYTE:
+            return in.readByte();
+        case SHORT:
+            return in.readShort();
+        case CHAR:
+            return in.readChar();
+        case INT:
+            return in.readInt();
+        case LONG:
+            return in.readLong();
+        case FLOAT:
+            return in.readFloat();
+        case DOUBLE:
+            return in.readDouble();
+        case STRING:
+            return readString( in );
+        case DATE:
+            return LocalDate.ofEpochDay( in.readLong() );
+        case LOCAL_TIME:
+            return LocalTime.ofNanoOfDay( in.readLong() );
+        case TIME:
+            LocalTime time = LocalTime.ofNanoOfDay( in.readLong() );
+            return OffsetTime.of( time, ZoneOffset.ofTotalSeconds( in.readInt() ) );
+        case LOCAL_DATE_TIME:
+            long localSeconds = in.readLong();
+            return LocalDateTime.ofEpochSecond( localSeconds, in.readInt(), ZoneOffset.UTC );
+        case DATE_TIME:
+            long seconds = in.readLong();
+            Instant instant = Instant.ofEpochSecond( seconds, in.readInt() );
+            return ZonedDateTime.ofInstant( instant, ZoneId.of( readString( in ) ) );
+        case DURATION:
+            long months = in.readLong();
+            long days = in.readLong();
+            long durationSeconds = in.readLong();
+            return DurationValue.duration( months, days, durationSeconds, in.readLong() );
+        case POINT:
+            CoordinateReferenceSystem crs = CoordinateReferenceSystem.get( in.readInt() );
+            double[] coordinates = new double[readLength( in )];
+            for ( int i = 0; i < coordinates.length; i++ )
+            {
+                coordinates[i] = in.readDouble();
+            }
+            return Values.pointValue( crs, coordinates );
+        default:
+            throw new IOException( "Unknown property value type " + type + " in graph snapshot" );
+        }
+    }
+}
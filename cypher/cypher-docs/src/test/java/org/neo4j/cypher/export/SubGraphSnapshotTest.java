@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.export;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Map;
+
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestDatabaseManagementServiceBuilder;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.DurationValue;
+import org.neo4j.values.storable.PointValue;
+import org.neo4j.values.storable.Values;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAME;
+import static org.neo4j.cypher.export.ExportTestSupport.describe;
+import static org.neo4j.cypher.export.ExportTestSupport.describeSchema;
+
+public class SubGraphSnapshotTest
+{
+    private DatabaseManagementService sourceService;
+    private DatabaseManagementService targetService;
+    private GraphDatabaseService source;
+    private GraphDatabaseService target;
+
+    @Before
+    public void setUp()
+    {
+        sourceService = new TestDatabaseManagementServiceBuilder().impermanent().build();
+        targetService = new TestDatabaseManagementServiceBuilder().impermanent().build();
+        source = sourceService.database( DEFAULT_DATABASE_NAME );
+        target = targetService.database( DEFAULT_DATABASE_NAME );
+    }
+
+    @After
+    public void tearDown()
+    {
+        sourceService.shutdown();
+        targetService.shutdown();
+    }
+
+    @Test
+    public void emptyGraphRoundTrips() throws IOException
+    {
+        assertRoundTrips();
+    }
+
+    @Test
+    public void everyPropertyTypeRoundTrips() throws IOException
+    {
+        LocalDate date = LocalDate.of( 2020, 2, 29 );
+        LocalTime localTime = LocalTime.of( 23, 59, 58, 123_456_789 );
+        OffsetTime time = OffsetTime.of( localTime, ZoneOffset.ofHoursMinutes( -5, -30 ) );
+        LocalDateTime localDateTime = LocalDateTime.of( date, localTime );
+        ZonedDateTime dateTime = ZonedDateTime.of( localDateTime, ZoneId.of( "Europe/Stockholm" ) );
+        ZonedDateTime offsetDateTime = ZonedDateTime.of( localDateTime.minusYears( 3000 ), ZoneOffset.ofHours( 14 ) );
+        DurationValue duration = DurationValue.duration( 14, 3, 4 * 3600 + 5, 600_000_000 );
+        DurationValue negativeDuration = DurationValue.duration( -1, -2, -3, -4 );
+        PointValue cartesian = Values.pointValue( CoordinateReferenceSystem.Cartesian, 1.5, -2.5 );
+        PointValue geographic = Values.pointValue( CoordinateReferenceSystem.WGS84_3D, 12.5, 56.25, 100 );
+
+        try ( Transaction tx = source.beginTx() )
+        {
+            Node node = tx.createNode( Label.label( "Values" ) );
+            node.setProperty( "boolean", true );
+            node.setProperty( "byte", (byte) -7 );
+            node.setProperty( "short", (short) 300 );
+            node.setProperty( "char", 'ö' );
+            node.setProperty( "int", Integer.MIN_VALUE );
+            node.setProperty( "long", Long.MAX_VALUE );
+            node.setProperty( "float", 1.25f );
+            node.setProperty( "double", Math.PI );
+            node.setProperty( "string", "a \"string\" with ünïcödé" );
+            node.setProperty( "date", date );
+            node.setProperty( "localTime", localTime );
+            node.setProperty( "time", time );
+            node.setProperty( "localDateTime", localDateTime );
+            node.setProperty( "dateTime", dateTime );
+            node.setProperty( "offsetDateTime", offsetDateTime );
+            node.setProperty( "duration", duration );
+            node.setProperty( "cartesian", cartesian );
+            node.setProperty( "geographic", geographic );
+
+            Node arrays = tx.createNode( Label.label( "Arrays" ) );
+            arrays.setProperty( "booleans", new boolean[]{true, false} );
+            arrays.setProperty( "bytes", new byte[]{1, -2, 3} );
+            arrays.setProperty( "shorts", new short[]{-300, 300} );
+            arrays.setProperty( "chars", new char[]{'a', 'ö'} );
+            arrays.setProperty( "ints", new int[]{Integer.MIN_VALUE, 0, Integer.MAX_VALUE} );
+            arrays.setProperty( "longs", new long[]{Long.MIN_VALUE, Long.MAX_VALUE} );
+            arrays.setProperty( "floats", new float[]{-1.5f, 2.5f} );
+            arrays.setProperty( "doubles", new double[]{Double.MIN_VALUE, Double.MAX_VALUE} );
+            arrays.setProperty( "strings", new String[]{"", "two"} );
+            arrays.setProperty( "emptyStrings", new String[0] );
+            arrays.setProperty( "dates", new LocalDate[]{date, date.plusDays( 1 )} );
+            arrays.setProperty( "localTimes", new LocalTime[]{localTime, LocalTime.MIDNIGHT} );
+            arrays.setProperty( "times", new OffsetTime[]{time, OffsetTime.of( LocalTime.NOON, ZoneOffset.UTC )} );
+            arrays.setProperty( "localDateTimes", new LocalDateTime[]{localDateTime} );
+            arrays.setProperty( "dateTimes", new ZonedDateTime[]{dateTime, offsetDateTime} );
+            arrays.setProperty( "durations", new DurationValue[]{duration, negativeDuration} );
+            arrays.setProperty( "points", new PointValue[]{cartesian, Values.pointValue( CoordinateReferenceSystem.Cartesian, 0, 0 )} );
+
+            arrays.createRelationshipTo( node, RelationshipType.withName( "HAS" ) ).setProperty( "since", dateTime );
+            tx.commit();
+        }
+
+        assertRoundTrips();
+    }
+
+    @Test
+    public void labelsRelationshipsAndSchemaRoundTrip() throws IOException
+    {
+        try ( Transaction tx = source.beginTx() )
+        {
+            tx.schema().indexFor( Label.label( "Person" ) ).on( "name" ).create();
+            tx.schema().constraintFor( Label.label( "Company" ) ).assertPropertyIsUnique( "name" ).create();
+            tx.commit();
+        }
+        source.executeTransactionally( "CREATE (a:Person:Admin {name: 'Alice'}), (b:Person {name: 'Bob'}), (c:Company {name: 'Acme'}), (), " +
+                "(a)-[:KNOWS {since: 2001}]->(b), (b)-[:KNOWS]->(a), (a)-[:WORKS_AT]->(c), (a)-[:LIKES]->(a)" );
+
+        assertRoundTrips();
+    }
+
+    @Test
+    public void graphLargerThanATransactionRoundTrips() throws IOException
+    {
+        source.executeTransactionally( "UNWIND range(1, $count) AS i CREATE (:Item {number: i})-[:NEXT]->(:Item {number: -i})",
+                Map.of( "count", SubGraphSnapshotReader.BATCH_SIZE + 1 ) );
+
+        assertRoundTrips();
+    }
+
+    private void assertRoundTrips() throws IOException
+    {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        try ( Transaction tx = source.beginTx() )
+        {
+            new SubGraphSnapshotWriter( DatabaseSubGraph.from( tx ) ).write( snapshot );
+        }
+
+        new SubGraphSnapshotReader( target ).read( new ByteArrayInputStream( snapshot.toByteArray() ) );
+
+        assertThat( describe( target ), equalTo( describe( source ) ) );
+        assertThat( describeSchema( target ), equalTo( describeSchema( source ) ) );
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.export;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAmount;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+import org.neo4j.graphdb.schema.ConstraintType;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.spatial.Point;
+
+import static org.neo4j.cypher.export.SnapshotFormat.ARRAY;
+import static org.neo4j.cypher.export.SnapshotFormat.BOOLEAN;
+import static org.neo4j.cypher.export.SnapshotFormat.BYTE;
+import static org.neo4j.cypher.export.SnapshotFormat.CHAR;
+import static org.neo4j.cypher.export.SnapshotFormat.CONSTRAINT;
+import static org.neo4j.cypher.export.SnapshotFormat.DATE;
+import static org.neo4j.cypher.export.SnapshotFormat.DATE_TIME;
+import static org.neo4j.cypher.export.SnapshotFormat.DOUBLE;
+import static org.neo4j.cypher.export.SnapshotFormat.DURATION;
+import static org.neo4j.cypher.export.SnapshotFormat.END;
+import static org.neo4j.cypher.export.SnapshotFormat.FLOAT;
+import static org.neo4j.cypher.export.SnapshotFormat.INDEX;
+import static org.neo4j.cypher.export.SnapshotFormat.INT;
+import static org.neo4j.cypher.export.SnapshotFormat.LOCAL_DATE_TIME;
+import static org.neo4j.cypher.export.SnapshotFormat.LOCAL_TIME;
+import static org.neo4j.cypher.export.SnapshotFormat.LONG;
+import static org.neo4j.cypher.export.SnapshotFormat.MAGIC;
+import static org.neo4j.cypher.export.SnapshotFormat.NODE;
+import static org.neo4j.cypher.export.SnapshotFormat.POINT;
+import static org.neo4j.cypher.export.SnapshotFormat.RELATIONSHIP;
+import static org.neo4j.cypher.export.SnapshotFormat.SHORT;
+import static org.neo4j.cypher.export.SnapshotFormat.STRING;
+import static org.neo4j.cypher.export.SnapshotFormat.TIME;
+import static org.neo4j.cypher.export.SnapshotFormat.VERSION;
+import static org.neo4j.cypher.export.SnapshotFormat.writeVarLong;
+import static org.neo4j.internal.helpers.collection.Iterables.single;
+
+/**
+ * Writes a {@link SubGraph} as a compressed binary snapshot, see {@link SnapshotFormat}, which
+ * {@link SubGraphSnapshotReader} loads much faster than replaying a {@link SubGraphExporter} script. Indexes and
+ * constraints are limited the same way as in the script export.
+ */
+public class SubGraphSnapshotWriter
+{
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final SubGraph graph;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    public SubGraphSnapshotWriter( SubGraph graph )
+    {
+        this.graph = graph;
+    }
+
+    public void write( OutputStream output ) throws IOException
+    {
+        dictionary.clear();
+        DataOutputStream header = new DataOutputStream( output );
+        header.writeInt( MAGIC );
+        header.writeShort( VERSION );
+        header.flush();
+
+        Deflater deflater = new Deflater( Deflater.BEST_SPEED );
+        try
+        {
+            DeflaterOutputStream compressed = new DeflaterOutputStream( output, deflater, BUFFER_SIZE );
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( compressed, BUFFER_SIZE ) );
+            writeSchema( out );
+            for ( Node node : graph.getNodes() )
+            {
+                out.writeByte( NODE );
+                writeVarLong( out, node.getId() );
+                writeLabels( out, node );
+                writeProperties( out, node );
+            }
+            for ( Node node : graph.getNodes() )
+            {
+                for ( Relationship rel : node.getRelationships( Direction.OUTGOING ) )
+                {
+                    out.writeByte( RELATIONSHIP );
+                    writeVarLong( out, rel.getStartNodeId() );
+                    writeVarLong( out, rel.getEndNodeId() );
+                    writeToken( out, rel.getType().name() );
+                    writeProperties( out, rel );
+                }
+            }
+            out.writeByte( END );
+            out.flush();
+            compressed.finish();
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+    private void writeSchema( DataOutputStream out ) throws IOException
+    {
+        for ( IndexDefinition index : graph.getIndexes() )
+        {
+            if ( index.isConstraintIndex() || index.isMultiTokenIndex() )
+            {
+                continue;
+            }
+            out.writeByte( INDEX );
+            writeToken( out, single( index.getLabels() ).name() );
+            writeToken( out, singleKey( index.getPropertyKeys(), "indexes" ) );
+        }
+        for ( ConstraintDefinition constraint : graph.getConstraints() )
+        {
+            if ( !constraint.isConstraintType( ConstraintType.UNIQUENESS ) )
+            {
+                throw new RuntimeException( "Exporting constraints other than uniqueness is not implemented yet" );
+            }
+            out.writeByte( CONSTRAINT );
+            writeToken( out, constraint.getLabel().name() );
+            writeToken( out, singleKey( constraint.getPropertyKeys(), "constraints" ) );
+        }
+    }
+
+    private static String singleKey( Iterable<String> keys, String what )
+    {
+        Iterator<String> propertyKeys = keys.iterator();
+        if ( !propertyKeys.hasNext() )
+        {
+            throw new IllegalStateException( "Schema " + what + " should have at least one property key" );
+        }
+        String key = propertyKeys.next();
+        if ( propertyKeys.hasNext() )
+        {
+            throw new RuntimeException( "Exporting compound " + what + " is not implemented yet" );
+        }
+        return key;
+    }
+
+    private void writeLabels( DataOutputStream out, Node node ) throws IOException
+    {
+        int count = 0;
+        for ( Label ignored : node.getLabels() )
+        {
+            count++;
+        }
+        writeVarLong( out, count );
+        for ( Label label : node.getLabels() )
+        {
+            writeToken( out, label.name() );
+        }
+    }
+
+    private void writeProperties( DataOutputStream out, Entity entity ) throws IOException
+    {
+        Map<String, Object> properties = entity.getAllProperties();
+        writeVarLong( out, properties.size() );
+        for ( Map.Entry<String, Object> property : properties.entrySet() )
+        {
+            writeToken( out, property.getKey() );
+            writeValue( out, property.getValue() );
+        }
+    }
+
+    /*
+     * A token already in the dictionary is written as its position plus one, a new one as zero followed by its name.
+     */
+    private void writeToken( DataOutputStream out, String token ) throws IOException
+    {
+        Integer position = dictionary.get( token );
+        if ( position != null )
+        {
+            writeVarLong( out, position + 1 );
+            return;
+        }
+        dictionary.put( token, dictionary.size() );
+        writeVarLong( out, 0 );
+        writeString( out, token );
+    }
+
+    private static void writeString( DataOutputStream out, String value ) throws IOException
+    {
+        byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+        writeVarLong( out, bytes.length );
+        out.write( bytes );
+    }
+
+    private static void writeValue( DataOutputStream out, Object value ) throws IOException
+    {
+        if ( value.getClass().isArray() )
+        {
+            writeArray( out, value );
+            return;
+        }
+        byte type = typeOf( value.getClass() );
+        out.writeByte( type );
+        writeScalar( out, type, value );
+    }
+
+    private static void writeArray( DataOutputStream out, Object array ) throws IOException
+    {
+        byte type = typeOf( array.getClass().getComponentType() );
+        out.writeByte( type + ARRAY );
+        int length = Array.getLength( array );
+        writeVarLong( out, length );
+        switch ( type )
+        {
+        case BYTE:
+            out.write( (byte[]) array );
+            break;
+        case INT:
+            for ( int element : (int[]) array )
+            {
+                out.writeInt( element );
+            }
+            break;
+        case LONG:
+            for ( long element : (long[]) array )
+            {
+                out.writeLong( element );
+            }
+            break;
+        case DOUBLE:
+            for ( double element : (double[]) array )
+            {
+                out.writeDouble( element );
+            }
+            break;
+        default:
+            for ( int i = 0; i < length; i++ )
+            {
+                writeScalar( out, type, Array.get( array, i ) );
+            }
+        }
+    }
+
+    private static void writeScalar( DataOutputStream out, byte type, Object value ) throws IOException
+    {
+        switch ( type )
+        {
+        case BOOLEAN:
+            out.writeBoolean( (Boolean) value );
+            break;
+        case BYTE:
+            out.writeByte( (Byte) value );
+            break;
+        case SHORT:
+            out.writeShort( (Short) value );
+            break;
+        case CHAR:
+            out.writeChar( (Character) value );
+            break;
+        case INT:
+            out.writeInt( (Integer) value );
+            break;
+        case LONG:
+            out.writeLong( (Long) value );
+            break;
+        case FLOAT:
+            out.writeFloat( (Float) value );
+            break;
+        case DOUBLE:
+            out.writeDouble( (Double) value );
+            break;
+        case DATE:
+            out.writeLong( ((LocalDate) value).toEpochDay() );
+            break;
+        case LOCAL_TIME:
+            out.writeLong( ((LocalTime) value).toNanoOfDay() );
+            break;
+        case TIME:
+            OffsetTime time = (OffsetTime) value;
+            out.writeLong( time.toLocalTime().toNanoOfDay() );
+            out.writeInt( time.getOffset().getTotalSeconds() );
+            break;
+        case LOCAL_DATE_TIME:
+            LocalDateTime localDateTime = (LocalDateTime) value;
+            out.writeLong( localDateTime.toEpochSecond( ZoneOffset.UTC ) );
+            out.writeInt( localDateTime.getNano() );
+            break;
+        case DATE_TIME:
+            ZonedDateTime dateTime = (ZonedDateTime) value;
+            out.writeLong( dateTime.toEpochSecond() );
+            out.writeInt( dateTime.getNano() );
+            writeString( out, dateTime.getZone().getId() );
+            break;
+        case DURATION:
+            TemporalAmount duration = (TemporalAmount) value;
+            out.writeLong( duration.get( ChronoUnit.MONTHS ) );
+            out.writeLong( duration.get( ChronoUnit.DAYS ) );
+            out.writeLong( duration.get( ChronoUnit.SECONDS ) );
+            out.writeLong( duration.get( ChronoUnit.NANOS ) );
+            break;
+        case POINT:
+            Point point = (Point) value;
+            out.writeInt( point.getCRS().getCode() );
+            List<Double> coordinates = point.getCoordinate().getCoordinate();
+            writeVarLong( out, coordinates.size() );
+            for ( double coordinate : coordinates )
+            {
+                out.writeDouble( coordinate );
+            }
+            break;
+        default:
+            writeString( out, (String) value );
+        }
+    }
+
+    private static byte typeOf( Class<?> type )
+    {
+        if ( type == String.class )
+        {
+            return STRING;
+        }
+        if ( type == Long.class || type == long.class )
+        {
+            return LONG;
+        }
+        if ( type == Integer.class || type == int.class )
+        {
+            return INT;
+        }
+        if ( type == Double.class || type == double.class )
+        {
+            return DOUBLE;
+        }
+        if ( type == Boolean.class || type == boolean.class )
+        {
+            return BOOLEAN;
+        }
+        if ( type == Float.class || type == float.class )
+        {
+            return FLOAT;
+        }
+        if ( type == Short.class || type == short.class )
+        {
+            return SHORT;
+        }
+        if ( type == Byte.class || type == byte.class )
+        {
+            return BYTE;
+        }
+        if ( type == Character.class || type == char.class )
+        {
+            return CHAR;
+        }
+        if ( type == LocalDate.class )
+        {
+            return DATE;
+        }
+        if ( type == LocalTime.class )
+        {
+            return LOCAL_TIME;
+        }
+        if ( type == OffsetTime.class )
+        {
+            return TIME;
+        }
+        if ( type == LocalDateTime.class )
+        {
+            return LOCAL_DATE_TIME;
+        }
+        if ( type == ZonedDateTime.class )
+        {
+            return DATE_TIME;
+        }
+        if ( TemporalAmount.class.isAssignableFrom( type ) )
+        {
+            return DURATION;
+        }
+        if ( Point.class.isAssignableFrom( type ) )
+        {
+            return POINT;
+        }
+        throw new IllegalArgumentException( "Cannot write property values of type " + type.getName() + " to a snapshot" );
+    }
+}
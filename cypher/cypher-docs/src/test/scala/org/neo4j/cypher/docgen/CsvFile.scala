@@ -25,6 +25,9 @@ import java.nio.charset.StandardCharsets
 object CsvFile {
   def urify(file: File): String =
     file.toURI.toURL.toString.replace("\\", "\\\\")
+
+  def line(values: Seq[String], delimiter: Char, quoted: Boolean): String =
+    values.map(s => if (quoted) '"' + s + '"' else s).mkString(delimiter.toString)
 }
 
 class CsvFile(fileName: String, delimiter: Char = ',')(implicit csvFilesDir: File) {
@@ -40,11 +43,19 @@ class CsvFile(fileName: String, delimiter: Char = ',')(implicit csvFilesDir: Fil
     withContentsF(false, lines:_*)
   }
 
+  /**
+   * Serves the file from `server` instead of writing it to `csvFilesDir`.
+   *
+   * @return the url of the file
+   */
+  def servedBy(server: CsvFileServer, quoted: Boolean = false)(lines: Seq[String]*): String =
+    server.serve(fileName, delimiter, quoted)(lines: _*)
+
   def withContentsF(quoted: Boolean, lines: Seq[String]*): File = {
     val csvFile = new File(csvFilesDir, fileName)
     val writer = new PrintWriter(csvFile, StandardCharsets.UTF_8.name())
     lines.foreach(line => {
-      writer.println(line.map(s => if (quoted) '"' + s + '"' else s).mkString(delimiter.toString))
+      writer.println(CsvFile.line(line, delimiter, quoted))
     })
     writer.flush()
     writer.close()
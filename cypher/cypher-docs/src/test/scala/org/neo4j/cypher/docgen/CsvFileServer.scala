@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.docgen
+
+import java.io.{BufferedWriter, FilterOutputStream, OutputStream, OutputStreamWriter}
+import java.net.{InetAddress, InetSocketAddress}
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.{ConcurrentHashMap, Executors, ThreadFactory}
+import java.util.zip.GZIPOutputStream
+
+import com.sun.net.httpserver.{HttpExchange, HttpServer}
+
+/**
+ * An in-process stand-in for the web server behind `remote-csv-upload`, so that `LOAD CSV FROM 'http://...'` examples
+ * can run without writing their files to disk.
+ *
+ * Files are kept as the lines or the line generator they were registered with, and rendered while they are sent, in
+ * chunks, gzipped if the client accepts that. Requests with a single `Range: bytes=...` get that part of the file.
+ */
+class CsvFileServer extends AutoCloseable {
+
+  import CsvFileServer._
+
+  private val files = new ConcurrentHashMap[String, ServedCsv]()
+  private val server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress, 0), 0)
+  server.createContext("/", (exchange: HttpExchange) => try handle(exchange) finally exchange.close())
+  private val executor = Executors.newCachedThreadPool(daemonThreads)
+  server.setExecutor(executor)
+  server.start()
+
+  def baseUrl: String = s"http://${server.getAddress.getHostString}:${server.getAddress.getPort}/"
+
+  /**
+   * @return the url of the file
+   */
+  def serve(fileName: String, delimiter: Char = ',', quoted: Boolean = false)(lines: Seq[String]*): String =
+    register(fileName, new ServedCsv(() => lines.iterator, delimiter, quoted))
+
+  /**
+   * Serves `rows` lines made by `row` from the row number, after `header` if there is one. Nothing is kept in memory,
+   * the lines are made again for every request.
+   *
+   * @return the url of the file
+   */
+  def serveGenerated(fileName: String, rows: Long, header: Option[Seq[String]] = None, delimiter: Char = ',')
+                    (row: Long => Seq[String]): String =
+    register(fileName, new ServedCsv(() => header.iterator ++ Iterator.iterate(0L)(_ + 1).takeWhile(_ < rows).map(row), delimiter, quoted = false))
+
+  override def close(): Unit =
+    try server.stop(0) finally executor.shutdownNow()
+
+  private def register(fileName: String, csv: ServedCsv): String = {
+    files.put(fileName, csv)
+    baseUrl + fileName
+  }
+
+  private def handle(exchange: HttpExchange): Unit = {
+    val headers = exchange.getRequestHeaders
+    val responseHeaders = exchange.getResponseHeaders
+    val headOnly = exchange.getRequestMethod.equalsIgnoreCase("HEAD")
+    val csv = files.get(exchange.getRequestURI.getPath.stripPrefix("/"))
+    if (csv == null) {
+      exchange.sendResponseHeaders(404, -1)
+      return
+    }
+    responseHeaders.set("Content-Type", "text/csv; charset=utf-8")
+    responseHeaders.set("Accept-Ranges", "bytes")
+
+    Option(headers.getFirst("Range")).flatMap(parseRange) match {
+      case Some((first, last)) =>
+        val length = csv.length
+        val (start, end) = first match {
+          case Some(start) => (start, math.min(last.getOrElse(Long.MaxValue), length - 1))
+          case None => (math.max(length - last.get, 0L), length - 1)
+        }
+        if (start >= length || start > end) {
+          responseHeaders.set("Content-Range", s"bytes */$length")
+          exchange.sendResponseHeaders(416, -1)
+        } else {
+          responseHeaders.set("Content-Range", s"bytes $start-$end/$length")
+          exchange.sendResponseHeaders(206, if (headOnly) -1 else end - start + 1)
+          if (!headOnly)
+            csv.writeTo(new RangeOutputStream(exchange.getResponseBody, start, end))
+        }
+
+      // no or an unsupported range, like several at once, which means sending the whole file
+      case None =>
+        val gzip = Option(headers.getFirst("Accept-Encoding")).exists(_.toLowerCase.contains("gzip"))
+        if (gzip)
+          responseHeaders.set("Content-Encoding", "gzip")
+        // a length of 0 makes the response chunked
+        exchange.sendResponseHeaders(200, if (headOnly) -1 else 0)
+        if (!headOnly) {
+          val out = if (gzip) new GZIPOutputStream(exchange.getResponseBody, BUFFER_SIZE) else exchange.getResponseBody
+          csv.writeTo(out)
+          out.close()
+        }
+    }
+  }
+}
+
+object CsvFileServer {
+  private val BUFFER_SIZE = 1 << 16
+  private val RangePattern = """bytes=(\d*)-(\d*)""".r
+
+  private val daemonThreads: ThreadFactory = (r: Runnable) => {
+    val thread = new Thread(r, "csv-file-server")
+    thread.setDaemon(true)
+    thread
+  }
+
+  /**
+   * @return the first and last byte asked for, where a suffix range like `bytes=-500` has no first byte and the
+   *         length of the suffix as the last, or None if the range isn't one this server handles
+   */
+  private def parseRange(header: String): Option[(Option[Long], Option[Long])] = header.trim match {
+    case RangePattern(first, last) if first.nonEmpty || last.nonEmpty =>
+      Some((Some(first).filter(_.nonEmpty).map(_.toLong), Some(last).filter(_.nonEmpty).map(_.toLong)))
+    case _ =>
+      None
+  }
+
+  private class ServedCsv(lines: () => Iterator[Seq[String]], delimiter: Char, quoted: Boolean) {
+    // only worked out when a range is asked for, as it means rendering the whole file once
+    lazy val length: Long = {
+      val counter = new CountingOutputStream
+      writeTo(counter)
+      counter.count
+    }
+
+    def writeTo(out: OutputStream): Unit = {
+      val writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE)
+      val it = lines()
+      while (it.hasNext && !isDone(out)) {
+        writer.write(CsvFile.line(it.next(), delimiter, quoted))
+        writer.write('\n')
+      }
+      writer.flush()
+    }
+
+    private def isDone(out: OutputStream): Boolean = out match {
+      case range: RangeOutputStream => range.isDone
+      case _ => false
+    }
+  }
+
+  private class CountingOutputStream extends OutputStream {
+    var count = 0L
+
+    override def write(b: Int): Unit = count += 1
+
+    override def write(b: Array[Byte], off: Int, len: Int): Unit = count += len
+  }
+
+  /*
+  Passes on the bytes from `first` to `last`, both included, and drops the rest
+   */
+  private class RangeOutputStream(out: OutputStream, first: Long, last: Long) extends FilterOutputStream(out) {
+    private var position = 0L
+
+    def isDone: Boolean = position > last
+
+    override def write(b: Int): Unit = {
+      if (position >= first && position <= last)
+        out.write(b)
+      position += 1
+    }
+
+    override def write(b: Array[Byte], off: Int, len: Int): Unit = {
+      val from = math.max(first - position, 0L)
+      val to = math.min(last + 1 - position, len.toLong)
+      if (from < to)
+        out.write(b, off + from.toInt, (to - from).toInt)
+      position += len
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.docgen
+
+import java.io.{File, InputStream}
+import java.net.{HttpURLConnection, URL}
+import java.nio.charset.StandardCharsets
+import java.util.zip.GZIPInputStream
+
+import org.scalatest.{BeforeAndAfterAll, FunSuiteLike, Matchers, Suite}
+
+import scala.io.Source
+
+class CsvFileServerTest extends Suite
+                        with FunSuiteLike
+                        with Matchers
+                        with BeforeAndAfterAll {
+
+  private val server = new CsvFileServer
+  private implicit val csvFilesDir: File = new File("target")
+
+  override protected def afterAll(): Unit = {
+    server.close()
+    super.afterAll()
+  }
+
+  test("serves the lines of a csv file") {
+    val url = new CsvFile("artists.csv").servedBy(server)(Seq("1", "ABBA", "1992"), Seq("2", "Roxette", "1986"))
+
+    url should equal(server.baseUrl + "artists.csv")
+    val (status, headers, body) = get(url)
+    status should equal(200)
+    headers("Transfer-Encoding") should equal("chunked")
+    body should equal("1,ABBA,1992\n2,Roxette,1986\n")
+  }
+
+  test("serves quoted values with another delimiter") {
+    val url = server.serve("quoted.csv", ';', quoted = true)(Seq("1", "ABBA"))
+
+    get(url)._3 should equal("\"1\";\"ABBA\"\n")
+  }
+
+  test("gzips the file when the client accepts it") {
+    val url = server.serve("gzipped.csv")(Seq("a", "b"), Seq("c", "d"))
+
+    val (status, headers, body) = get(url, "Accept-Encoding" -> "gzip, deflate")
+    status should equal(200)
+    headers("Content-Encoding") should equal("gzip")
+    body should equal("a,b\nc,d\n")
+  }
+
+  test("serves byte ranges") {
+    val url = server.serve("ranges.csv")(Seq("0123456789"), Seq("abcdefghij"))
+
+    val (status, headers, body) = get(url, "Range" -> "bytes=2-5")
+    status should equal(206)
+    headers("Content-Range") should equal("bytes 2-5/22")
+    body should equal("2345")
+
+    get(url, "Range" -> "bytes=11-")._3 should equal("abcdefghij\n")
+    get(url, "Range" -> "bytes=-3")._3 should equal("ij\n")
+    get(url, "Range" -> "bytes=20-100")._3 should equal("j\n")
+    get(url, "Range" -> "bytes=22-")._1 should equal(416)
+  }
+
+  test("generates large files while sending them") {
+    val url = server.serveGenerated("generated.csv", 1000000, header = Some(Seq("id", "name")))(i => Seq(i.toString, s"name$i"))
+
+    get(url, "Range" -> "bytes=0-18")._3 should equal("id,name\n0,name0\n1,n")
+
+    val connection = new URL(url).openConnection().asInstanceOf[HttpURLConnection]
+    val lines = Source.fromInputStream(connection.getInputStream, StandardCharsets.UTF_8.name())
+    try {
+      lines.getLines().size should equal(1000001)
+    } finally lines.close()
+  }
+
+  test("answers unknown files with not found") {
+    get(server.baseUrl + "missing.csv")._1 should equal(404)
+  }
+
+  private def get(url: String, requestHeaders: (String, String)*): (Int, Map[String, String], String) = {
+    val connection = new URL(url).openConnection().asInstanceOf[HttpURLConnection]
+    requestHeaders.foreach { case (name, value) => connection.setRequestProperty(name, value) }
+    val status = connection.getResponseCode
+    val headers = Seq("Transfer-Encoding", "Content-Encoding", "Content-Range").flatMap(name => Option(connection.getHeaderField(name)).map(name -> _)).toMap
+    val body =
+      if (status >= 400) ""
+      else {
+        val in: InputStream =
+          if (headers.get("Content-Encoding").contains("gzip")) new GZIPInputStream(connection.getInputStream)
+          else connection.getInputStream
+        try new String(in.readAllBytes(), StandardCharsets.UTF_8) finally in.close()
+      }
+    (status, headers, body)
+  }
+}
@@ -21,7 +21,7 @@ package org.neo4j.cypher.docgen
 
 import java.io.{ByteArrayOutputStream, File, PrintWriter, StringWriter}
 import java.nio.charset.StandardCharsets
-import java.util.concurrent.TimeUnit
+import java.util.concurrent.{Callable, ExecutionException, Executors, TimeUnit}
 
 import org.apache.commons.io.FileUtils
 import org.junit.{After, Before}
@@ -98,15 +98,6 @@ trait DocumentationHelper extends GraphIcing with ExecutionEngineHelper {
     }
   }
 
-  def prepareFormatting(query: String): String = {
-    val str = Prettifier(query.trim(), keepMyNewlines = false)
-    if ((str takeRight 1) == ";") {
-      str
-    } else {
-      str + ";"
-    }
-  }
-
   def dumpSetupQueries(queries: List[String], dir: File) {
     dumpQueries(queries, dir, simpleName + "-setup")
   }
@@ -123,8 +114,15 @@ trait DocumentationHelper extends GraphIcing with ExecutionEngineHelper {
     if (queries.isEmpty) {
       ""
     } else {
-      val queryStrings = queries.map(prepareFormatting)
-      val output = AsciidocHelper.createCypherSnippetFromPreformattedQuery(queryStrings.mkString("\n"), true)
+      val queryStrings = new java.lang.StringBuilder
+      for (query <- queries) {
+        if (queryStrings.length > 0)
+          queryStrings.append('\n')
+        Prettifier.appendTo(queryStrings, query.trim())
+        if (queryStrings.length == 0 || queryStrings.charAt(queryStrings.length - 1) != ';')
+          queryStrings.append(';')
+      }
+      val output = AsciidocHelper.createCypherSnippetFromPreformattedQuery(queryStrings.toString, true)
       AsciiDocGenerator.dumpToSeparateFile(dir, testid, output)
     }
   }
@@ -337,54 +335,12 @@ abstract class DocumentingTestBase extends JUnitSuite with DocumentationHelper w
     // COST planner is default. Can't specify it without getting exception thrown if it's unavailable.
     val planners = if (providedPlanners.isEmpty) Seq("") else providedPlanners
 
+    if (parallelPlanners && planners.size > 1 && expectedException.isEmpty)
+      return executeWithAllPlannersInParallel(query, assertions, parameters, planners, prepareFunction)
+
     val results = planners.flatMap {
       case planner if expectedException.isEmpty =>
-        val parametersValue = ValueUtils.asMapValue(javaValues.asDeepJavaMap(parameters).asInstanceOf[java.util.Map[String, AnyRef]])
-
-        val contextFactory = Neo4jTransactionalContextFactory.create( db )
-        def txContext(transaction: InternalTransaction) =
-          contextFactory.newContext(
-            transaction,
-            query,
-            parametersValue
-          )
-
-        /*
-        Note on transaction handling here:
-
-        We have to execute the query in an implicit top-level transaction, because otherwise PERIODIC COMMIT
-        does not work. Depending on the kind of query, the query might be completely executed and materialized
-        under the hood by the cypher execution engine before returning from execute, and in some cases
-        `executeTransaction` is also closed.
-
-        For this reason we create a second `extractResultTransaction` to use while building the [[DocsExecutionResult]].
-        If `executionTransaction` was closed by execute this will create a new real transaction, but in most cases it's
-        simply going to become a `PlaceBoTransaction` inside `executeTransaction`, giving no overhead. We need to
-        guarantee a transaction during result building in case the [[ResultStringBuilder]] needs to fetch e.g. node properties.
-
-        After building the docsResult, both `executeTransaction` and `extractResultTransaction` are closed.
-
-        We now create one final transaction is which to execute assertions, by doing
-
-          `db.inTx(assertions(docsResult))`
-
-        This transaction is necessary for Core API access in assertion code.
-         */
-        val executeTransaction = db.beginTransaction( Type.`implicit`, SecurityContext.AUTH_DISABLED )
-        val docsResult = try {
-          val context = txContext(executeTransaction)
-          val subscriber = new ResultSubscriber(context)
-          val result = engine.execute(s"$planner $query",
-            parametersValue,
-            context,
-            profile = false,
-            prePopulate = false,
-            subscriber)
-          subscriber.init(result)
-          val docResult = DocsExecutionResult(subscriber, txContext(executeTransaction))
-          executeTransaction.commit()
-          docResult
-        } finally executeTransaction.close()
+        val docsResult = executeAndBuildResult(db, engine, planner, query, parameters)
 
         assertions(docsResult)
         val resultAsString = docsResult.resultAsString
@@ -438,6 +394,134 @@ abstract class DocumentingTestBase extends JUnitSuite with DocumentationHelper w
     results.headOption
   }
 
+  /**
+   * Runs the first planner against the prepared database and every other planner against its own copy of it, all at
+   * the same time, instead of rebuilding the fixture between planners. The queries run concurrently, but the assertions
+   * run on every planner's result one after another, once the first planner is done, so that an assertion that looks
+   * at `db` sees it as the query left it, like in the serial path. The other planners must also produce the same rows,
+   * in any order.
+   */
+  private def executeWithAllPlannersInParallel(query: String,
+                                               assertions: DocsExecutionResult => Unit,
+                                               parameters: Map[String, Any],
+                                               planners: Seq[String],
+                                               prepareFunction: => Unit): Option[String] = {
+    val clones = cloneStore(planners.size - 1)
+    val executor = Executors.newFixedThreadPool(clones.size)
+    try {
+      val otherResults = planners.tail.zip(clones).map {
+        case (planner, clone) => executor.submit(new Callable[DocsExecutionResult] {
+          override def call(): DocsExecutionResult = executeAndBuildResult(clone.db, clone.engine, planner, query, parameters)
+        })
+      }
+
+      val docsResult = executeAndBuildResult(db, engine, planners.head, query, parameters)
+      assertions(docsResult)
+      val resultAsString = docsResult.resultAsString
+      if (graphvizExecutedAfter) {
+        dumpGraphViz(dir, graphvizOptions.trim)
+      }
+
+      planners.tail.zip(otherResults).foreach {
+        case (planner, otherResultFuture) =>
+          val otherResult = try otherResultFuture.get() catch {
+            case e: ExecutionException => throw e.getCause
+          }
+          assertions(otherResult)
+          val other = otherResult.resultAsString
+          if (other.linesIterator.toSeq.sorted != resultAsString.linesIterator.toSeq.sorted)
+            fail(s"Planner '$planner' diverged from planner '${planners.head}' for query: $query\n$other\n---\n$resultAsString")
+      }
+
+      reset()
+      prepareFunction
+      Some(resultAsString)
+    } finally {
+      executor.shutdownNow()
+      clones.foreach(_.shutdown())
+    }
+  }
+
+  /*
+  The store can only be copied while it's shut down, so the database is restarted once, after the copies are made.
+   */
+  private def cloneStore(copies: Int): Seq[StoreClone] = {
+    managementService.shutdown()
+    val folders = (1 to copies).map { i =>
+      val folder = new File(dbFolder.getPath + "-clone" + i)
+      FileUtils.copyDirectory(dbFolder, folder)
+      folder
+    }
+    startDatabase()
+    db.withTx(tx => tx.schema().awaitIndexesOnline(10, TimeUnit.SECONDS))
+    folders.map(new StoreClone(_))
+  }
+
+  private class StoreClone(folder: File) {
+    private val managementService = newDatabaseManagementService(folder)
+    private val database = managementService.database(DEFAULT_DATABASE_NAME)
+    val db = new GraphDatabaseCypherService(database)
+    val engine: ExecutionEngine = ExecutionEngineFactory.createCommunityEngineFromDb(database)
+
+    def shutdown(): Unit = {
+      managementService.shutdown()
+      FileUtils.deleteDirectory(folder)
+    }
+  }
+
+  private def executeAndBuildResult(db: GraphDatabaseCypherService,
+                                    engine: ExecutionEngine,
+                                    planner: String,
+                                    query: String,
+                                    parameters: Map[String, Any]): DocsExecutionResult = {
+    val parametersValue = ValueUtils.asMapValue(javaValues.asDeepJavaMap(parameters).asInstanceOf[java.util.Map[String, AnyRef]])
+
+    val contextFactory = Neo4jTransactionalContextFactory.create( db )
+    def txContext(transaction: InternalTransaction) =
+      contextFactory.newContext(
+        transaction,
+        query,
+        parametersValue
+      )
+
+    /*
+    Note on transaction handling here:
+
+    We have to execute the query in an implicit top-level transaction, because otherwise PERIODIC COMMIT
+    does not work. Depending on the kind of query, the query might be completely executed and materialized
+    under the hood by the cypher execution engine before returning from execute, and in some cases
+    `executeTransaction` is also closed.
+
+    For this reason we create a second `extractResultTransaction` to use while building the [[DocsExecutionResult]].
+    If `executionTransaction` was closed by execute this will create a new real transaction, but in most cases it's
+    simply going to become a `PlaceBoTransaction` inside `executeTransaction`, giving no overhead. We need to
+    guarantee a transaction during result building in case the [[ResultStringBuilder]] needs to fetch e.g. node properties.
+
+    After building the docsResult, both `executeTransaction` and `extractResultTransaction` are closed.
+
+    We now create one final transaction is which to execute assertions, by doing
+
+      `db.inTx(assertions(docsResult))`
+
+    This transaction is necessary for Core API access in assertion code.
+     */
+    val executeTransaction = db.beginTransaction( Type.`implicit`, SecurityContext.AUTH_DISABLED )
+    try {
+      val context = txContext(executeTransaction)
+      val subscriber = new ResultSubscriber(context)
+      val result = engine.execute(s"$planner $query",
+        parametersValue,
+        context,
+        profile = false,
+        prePopulate = false,
+        subscriber)
+      subscriber.init(result)
+      val docResult = DocsExecutionResult(subscriber, txContext(executeTransaction))
+      executeTransaction.commit()
+      docResult
+    } finally executeTransaction.close()
+  }
+
   var dbFolder: File = _
   var managementService: DatabaseManagementService = _
   var db: GraphDatabaseCypherService = _
@@ -449,6 +533,8 @@ abstract class DocumentingTestBase extends JUnitSuite with DocumentationHelper w
   val graphvizOptions: String = ""
   val noTitle: Boolean = false
   val graphvizExecutedAfter: Boolean = false
+  // run the planners of a query side by side, each against its own copy of the prepared store
+  protected def parallelPlanners: Boolean = java.lang.Boolean.getBoolean("cypher.docs.parallelPlanners")
   var preparationQueries: List[String] = List()
 
   protected val baseUrl = System.getProperty("remote-csv-upload")
@@ -546,26 +632,50 @@ abstract class DocumentingTestBase extends JUnitSuite with DocumentationHelper w
 
   protected def newDatabaseManagementService(directory: File): DatabaseManagementService = new DatabaseManagementServiceBuilder(directory).build()
 
+  /*
+  With this on, a fresh database gets the fixture by copying a store built earlier from the same description and
+  setup queries, instead of building it again.
+   */
+  protected def cacheFixtures: Boolean = java.lang.Boolean.getBoolean("cypher.docs.fixtureCache")
+
+  private def fixtureKey: String =
+    FixtureCache.key(Seq(getClass.getName, graphDescription, setupQueries, setupConstraintQueries, properties))
+
   override def hardReset() {
     tearDown()
     dbFolder = new File("target/example-db" + System.nanoTime())
+    val cachedNodeMap = if (cacheFixtures) FixtureCache.restore(fixtureKey, dbFolder) else None
+    startDatabase()
+    cachedNodeMap match {
+      case Some(cached) =>
+        nodeMap = cached
+        db.withTx(tx => tx.schema().awaitIndexesOnline(10, TimeUnit.SECONDS))
+      case None =>
+        softReset()
+        if (cacheFixtures) {
+          managementService.shutdown()
+          FixtureCache.save(fixtureKey, dbFolder, nodeMap)
+          startDatabase()
+        }
+    }
+  }
+
+  private def startDatabase() {
     managementService = newDatabaseManagementService(dbFolder)
     val database: GraphDatabaseService = managementService.database(DEFAULT_DATABASE_NAME)
     db = new GraphDatabaseCypherService(database)
 
     engine = ExecutionEngineFactory.createCommunityEngineFromDb(database) // TODO: This should be Enterprise!
-
-    softReset()
   }
 
+  private lazy val fixtureDescription = GraphDescription.create(new GraphImpl(graphDescription.toArray[String]))
+
   override def softReset() {
     cleanDatabaseContent(db.getGraphDatabaseService)
 
     db.withTx(tx => tx.schema().awaitIndexesOnline(10, TimeUnit.SECONDS))
 
-    val g = new GraphImpl(graphDescription.toArray[String])
-    val description = GraphDescription.create(g)
-    nodeMap = description.create(db.getGraphDatabaseService).asScala.map {
+    nodeMap = fixtureDescription.create(db.getGraphDatabaseService).asScala.map {
         case (name, node) => name -> node.getId
       }.toMap
     db.withTx( tx => {
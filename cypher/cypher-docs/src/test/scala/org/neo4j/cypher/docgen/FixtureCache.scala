@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.docgen
+
+import java.io.{File, FileInputStream, FileOutputStream}
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, StandardCopyOption}
+import java.security.MessageDigest
+import java.util.Properties
+
+import org.apache.commons.io.FileUtils
+import org.neo4j.kernel.internal.Version
+
+import scala.collection.JavaConverters._
+
+/**
+ * Stores of shut down databases with a test fixture in them, kept under `target/fixture-cache` and found by a hash
+ * of everything the fixture was built from, together with the ids of its named nodes. The hash includes the Neo4j
+ * version, so that a cache left in `target` by an older version, possibly with another store format, isn't used.
+ */
+object FixtureCache {
+  private val cacheDir = new File("target/fixture-cache")
+  private val nodesFile = "nodes.properties"
+
+  def key(parts: Seq[Any]): String = {
+    val digest = MessageDigest.getInstance("SHA-256")
+    (Version.getNeo4jVersion +: parts).foreach(part => digest.update((part + "\u0000").getBytes(StandardCharsets.UTF_8)))
+    digest.digest().map("%02x".format(_)).mkString
+  }
+
+  /**
+   * Copies the cached store into `dbFolder`, which must not be in use.
+   *
+   * @return the node ids of the fixture, or None if there is nothing cached for `key`
+   */
+  def restore(key: String, dbFolder: File): Option[Map[String, Long]] = {
+    val entry = new File(cacheDir, key)
+    if (!entry.isDirectory)
+      None
+    else {
+      FileUtils.copyDirectory(new File(entry, "store"), dbFolder)
+      val nodes = new Properties()
+      val in = new FileInputStream(new File(entry, nodesFile))
+      try nodes.load(in) finally in.close()
+      Some(nodes.asScala.map { case (name, id) => name -> id.toLong }.toMap)
+    }
+  }
+
+  /**
+   * Copies the store in `dbFolder`, which must be shut down, into the cache.
+   */
+  def save(key: String, dbFolder: File, nodeMap: Map[String, Long]): Unit = {
+    val entry = new File(cacheDir, key)
+    if (entry.isDirectory)
+      return
+    // tests in other forks may be saving the same fixture, so the entry only appears once it's complete
+    val partial = new File(cacheDir, key + "-" + System.nanoTime())
+    FileUtils.copyDirectory(dbFolder, new File(partial, "store"))
+    val nodes = new Properties()
+    nodeMap.foreach { case (name, id) => nodes.setProperty(name, id.toString) }
+    val out = new FileOutputStream(new File(partial, nodesFile))
+    try nodes.store(out, null) finally out.close()
+    try Files.move(partial.toPath, entry.toPath, StandardCopyOption.ATOMIC_MOVE)
+    catch {
+      case _: java.io.IOException => FileUtils.deleteQuietly(partial)
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.docgen
+
+import java.io.File
+
+import org.junit.Assert._
+import org.junit.Test
+
+class FixtureCacheTest extends DocumentingTestBase {
+  override def graphDescription = List("A KNOWS B", "A BLOCKS C", "B KNOWS C")
+
+  override val properties = Map(
+    "A" -> Map("name" -> "Anders"),
+    "B" -> Map("name" -> "Bossman"),
+    "C" -> Map("name" -> "Ceasar"))
+
+  def section = "InternalTesting"
+
+  override protected def cacheFixtures = true
+
+  @Test def fixture_is_the_same_when_copied_from_the_cache() {
+    val built = nodeMap
+    hardReset()
+
+    assertEquals(built, nodeMap)
+    db.withTx(tx => {
+      assertEquals("Anders", node(tx, "A").getProperty("name"))
+      assertEquals(3, tx.getAllRelationships.stream().count())
+    })
+  }
+
+  @Test def fixture_copied_from_the_cache_is_not_affected_by_earlier_updates() {
+    db.withTx(tx => node(tx, "A").setProperty("name", "Changed"))
+    hardReset()
+
+    db.withTx(tx => assertEquals("Anders", node(tx, "A").getProperty("name")))
+  }
+
+  @Test def keys_depend_on_every_part() {
+    assertEquals(FixtureCache.key(Seq("A KNOWS B", Map("A" -> 1))), FixtureCache.key(Seq("A KNOWS B", Map("A" -> 1))))
+    assertNotEquals(FixtureCache.key(Seq("A KNOWS B", Map("A" -> 1))), FixtureCache.key(Seq("A KNOWS B", Map("A" -> 2))))
+    assertNotEquals(FixtureCache.key(Seq("A KNOWS B", "")), FixtureCache.key(Seq("A KNOWS B")))
+  }
+
+  @Test def nothing_is_restored_for_an_unknown_key() {
+    val dbFolder = new File("target/example-db" + System.nanoTime())
+    assertEquals(None, FixtureCache.restore(FixtureCache.key(Seq("not a fixture")), dbFolder))
+    assertFalse(dbFolder.exists())
+  }
+}
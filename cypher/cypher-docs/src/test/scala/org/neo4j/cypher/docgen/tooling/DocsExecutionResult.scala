@@ -34,18 +34,24 @@ import scala.collection.mutable.ArrayBuffer
   *
   * This class was forked form the Neo4j repo RewindableExecutionResult, to remove the
   * test-dependency between the repositories.
+  *
+  * Rows are kept column by column as the kernel returned them, and only converted to Scala
+  * values when they are asked for. `size` counts all rows, even the ones dropped by a row limit.
   */
 class DocsExecutionResult(val columns: Array[String],
-                          result: Seq[Map[String, Any]],
+                          rows: ResultColumns,
                           val resultAsString: String,
                           planDescription: InternalPlanDescription,
                           statistics: QueryStatistics,
                           val notifications: Iterable[Notification]) {
 
-  def columnAs[T](column: String): Iterator[T] = result.iterator.map(row => row(column).asInstanceOf[T])
+  private lazy val result: IndexedSeq[Map[String, Any]] = (0 until rows.keptRows).map(rows.row)
+
+  def columnAs[T](column: String): Iterator[T] = rows.column(column).map(_.asInstanceOf[T])
   def toList: List[Map[String, Any]] = result.toList
+  def iterator: Iterator[Map[String, Any]] = (0 until rows.keptRows).iterator.map(rows.row)
   def toSet: Set[Map[String, Any]] = result.toSet
-  def size: Long = result.size
+  def size: Long = rows.totalRows
   def head: Map[String, Any] = result.head
 
   def executionPlanDescription(): InternalPlanDescription = planDescription
@@ -54,27 +60,26 @@ class DocsExecutionResult(val columns: Array[String],
 
   def queryStatistics(): QueryStatistics = statistics
 
-  def isEmpty: Boolean = result.isEmpty
-  def nonEmpty: Boolean = result.nonEmpty
+  def isEmpty: Boolean = rows.totalRows == 0
+  def nonEmpty: Boolean = rows.totalRows > 0
 }
 
 object DocsExecutionResult {
 
   val scalaValues = new RuntimeScalaValueConverter(isGraphKernelResultValue)
 
-  def apply(in: Result, txContext: TransactionalContext): DocsExecutionResult = {
-    val resultStringBuilder = ResultStringBuilder(in.columns().toArray(new Array[String](0)), txContext)
-    val result = new ArrayBuffer[Map[String, Any]]()
+  /**
+    * @param rowLimit how many rows to keep and render, the rest are only counted
+    */
+  def apply(in: Result, txContext: TransactionalContext, rowLimit: Int = Int.MaxValue): DocsExecutionResult = {
     val columns = in.columns().toArray(new Array[String](0))
+    val resultStringBuilder = ResultStringBuilder(columns, txContext)
+    val rows = new ResultColumns(columns, rowLimit)
 
     in.accept(new ResultVisitor[Exception] {
       override def visit(row: org.neo4j.graphdb.Result.ResultRow): Boolean = {
-        resultStringBuilder.addRow(row)
-        val map = new java.util.HashMap[String, Any]()
-        for (c <- columns) {
-          map.put(c, row.get(c))
-        }
-        result += scalaValues.asDeepScalaMap(map)
+        if (rows.add(row))
+          resultStringBuilder.addRow(row)
         true
       }
     })
@@ -86,7 +91,7 @@ object DocsExecutionResult {
 
     new DocsExecutionResult(
       columns,
-      result.toList,
+      rows,
       resultStringBuilder.result(statistics),
       in.getExecutionPlanDescription.asInstanceOf[InternalPlanDescription],
       statistics,
@@ -94,3 +99,51 @@ object DocsExecutionResult {
       )
   }
 }
+
+/**
+  * The values of up to `rowLimit` rows, one buffer per column, as returned by the kernel.
+  */
+class ResultColumns(columns: Array[String], rowLimit: Int) {
+  private val values: Array[ArrayBuffer[AnyRef]] = columns.map(_ => new ArrayBuffer[AnyRef]())
+  private var kept = 0
+  private var total = 0L
+
+  /**
+    * @return false if the row was only counted, because the limit was already reached
+    */
+  def add(row: org.neo4j.graphdb.Result.ResultRow): Boolean = {
+    total += 1
+    if (kept >= rowLimit)
+      false
+    else {
+      var i = 0
+      while (i < columns.length) {
+        values(i) += row.get(columns(i))
+        i += 1
+      }
+      kept += 1
+      true
+    }
+  }
+
+  def keptRows: Int = kept
+
+  def totalRows: Long = total
+
+  def row(index: Int): Map[String, Any] = {
+    val builder = Map.newBuilder[String, Any]
+    var i = 0
+    while (i < columns.length) {
+      builder += columns(i) -> DocsExecutionResult.scalaValues.asDeepScalaValue(values(i)(index))
+      i += 1
+    }
+    builder.result()
+  }
+
+  def column(name: String): Iterator[Any] = {
+    val i = columns.indexOf(name)
+    if (i < 0)
+      throw new NoSuchElementException(s"No column named '$name', the columns are ${columns.mkString(", ")}")
+    values(i).iterator.map(DocsExecutionResult.scalaValues.asDeepScalaValue)
+  }
+}
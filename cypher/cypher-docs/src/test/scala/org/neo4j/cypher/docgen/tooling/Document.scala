@@ -222,36 +222,46 @@ trait Admonitions extends Content with NoQueries {
 
 case class ResultRow(values: Seq[String])
 
-case class QueryResultTable(columns: Seq[String], rows: Seq[ResultRow], footer: String) extends Content with NoQueries {
+/**
+ * @param elidedRows rows of the result that are left out of the table, which ends with a line saying how many there are
+ */
+case class QueryResultTable(columns: Seq[String], rows: Seq[ResultRow], footer: String, elidedRows: Long = 0) extends Content with NoQueries {
   override def asciiDoc(level: Int): String = {
 
     val header = if (rows.nonEmpty) "header," else ""
     val cols = if (columns.isEmpty) 1 else columns.size
-    val rowsOutput: String = if (rows.isEmpty) s"$cols+|(empty result)"
-    else {
-      val columnHeader = columns.map(escape).mkString("| ", " | ", "")
-      val tableRows =
-        rows.
-          map(row => row.values.map(escape).mkString("|| ", " | ", "")).
-          mkString("\n")
-
-      s"$columnHeader\n$tableRows"
-    }
 
     // Remove trailing white space, then add <space>+ at the end of all rows (except the last one)
     val footerRows = footer.replaceAll("\\s+$", "").replaceAllLiterally("\n", " +\n")
 
-    s""".Result
-       |[role="queryresult",options="${header}footer",cols="$cols*<m"]
-       ||===
-       |$rowsOutput
-       |$cols+d|$footerRows
-       ||===
-       |
-       |""".stripMargin
+    // Written row by row, so that big tables aren't built up from a string per row first
+    val out = new StringBuilder()
+    out ++= ".Result\n"
+    out ++= s"""[role="queryresult",options="${header}footer",cols="$cols*<m"]\n"""
+    out ++= "|===\n"
+    if (rows.isEmpty)
+      out ++= s"$cols+|(empty result)\n"
+    else {
+      appendRow(out, columns)
+      rows.foreach(row => appendRow(out, row.values))
+    }
+    if (elidedRows > 0)
+      out ++= s"$cols+|(${if (elidedRows == 1) "1 more row" else s"$elidedRows more rows"})\n"
+    out ++= s"$cols+d|$footerRows\n"
+    out ++= "|===\n\n"
+    out.toString()
   }
 
-  private def escape(in: String): String = "+%s+".format(in)
+  private def appendRow(out: StringBuilder, values: Seq[String]): Unit = {
+    out ++= "| "
+    var first = true
+    values.foreach { value =>
+      if (!first) out ++= " | "
+      out += '+' ++= value += '+'
+      first = false
+    }
+    out += '\n'
+  }
 }
 
 trait SimpleQueryResultTable extends Content with NoQueries {
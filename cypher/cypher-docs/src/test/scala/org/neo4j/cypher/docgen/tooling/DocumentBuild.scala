@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.docgen.tooling
+
+import java.io.{File, PrintStream, PrintWriter}
+import java.lang.reflect.Modifier
+import java.net.{JarURLConnection, URLDecoder}
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.{Callable, ExecutionException, Executors}
+
+import scala.collection.JavaConverters._
+
+/**
+ * Builds the documents of all DocumentingTests at once, instead of one test class after another.
+ *
+ * The tests are found on the class path, created without running them, and then documents have their queries run,
+ * each in its own databases, and their AsciiDoc written, `documentThreads` at a time. Afterwards a report of how long
+ * each document took is printed, slowest first, and written to `target/docs/build-times.txt`.
+ *
+ * Run with `mvn test -DparallelDocs`, optionally with `-DskipTests` to only build the documents this way.
+ */
+object DocumentBuild {
+
+  /**
+   * How many documents are built at the same time. Each document also runs its initialisation groups on up to
+   * `cypher.docs.queryRunnerThreads` threads, so by default the processors are divided between the two levels.
+   */
+  val documentThreads: Int =
+    Integer.getInteger("cypher.docs.documentThreads", math.max(1, Runtime.getRuntime.availableProcessors() / QueryRunner.parallelism))
+
+  case class DocumentTiming(testClass: String, documentId: String, queryMillis: Long, writeMillis: Long, failures: Seq[Throwable]) {
+    def totalMillis: Long = queryMillis + writeMillis
+    def success: Boolean = failures.isEmpty
+  }
+
+  def main(args: Array[String]): Unit = {
+    val packages = if (args.isEmpty) Seq("org.neo4j.cypher.docgen") else args.toSeq
+    val timings = build(packages.flatMap(discover).distinct, documentThreads)
+
+    report(timings, System.out)
+    val reportFile = new File("target/docs/build-times.txt")
+    reportFile.getParentFile.mkdirs()
+    val out = new PrintStream(reportFile, StandardCharsets.UTF_8.name())
+    try report(timings, out) finally out.close()
+
+    // thrown rather than exiting, as exec:java runs this in the Maven JVM
+    val failed = timings.count(!_.success)
+    if (failed > 0)
+      throw new IllegalStateException(s"$failed of ${timings.size} documents failed to build, see $reportFile")
+  }
+
+  /**
+   * All concrete DocumentingTests in `packageName` and its sub packages.
+   */
+  def discover(packageName: String): Seq[Class[_ <: DocumentingTest]] = {
+    val loader = getClass.getClassLoader
+    val path = packageName.replace('.', '/')
+    val classNames = loader.getResources(path).asScala.flatMap { url =>
+      url.getProtocol match {
+        case "file" =>
+          val root = new File(URLDecoder.decode(url.getPath, StandardCharsets.UTF_8.name()))
+          classFiles(root).map(file => packageName + "." + root.toPath.relativize(file.toPath).toString.replace(File.separatorChar, '.'))
+        case "jar" =>
+          val jar = url.openConnection().asInstanceOf[JarURLConnection].getJarFile
+          try jar.entries().asScala.map(_.getName).filter(name => name.startsWith(path + "/") && name.endsWith(".class")).map(_.replace('/', '.')).toList
+          finally jar.close()
+        case _ =>
+          Seq.empty
+      }
+    }.map(_.stripSuffix(".class")).filterNot(_.contains("$")).toSeq.sorted
+
+    classNames.map(name => Class.forName(name, false, loader)).collect {
+      case c if classOf[DocumentingTest].isAssignableFrom(c) && !c.isInterface && !Modifier.isAbstract(c.getModifiers) =>
+        c.asSubclass(classOf[DocumentingTest])
+    }
+  }
+
+  private def classFiles(dir: File): Seq[File] =
+    Option(dir.listFiles()).toSeq.flatten.flatMap { file =>
+      if (file.isDirectory) classFiles(file) else if (file.getName.endsWith(".class")) Seq(file) else Seq.empty
+    }
+
+  /**
+   * Builds the documents of `tests`, `threads` at a time, and returns their timings in the order of `tests`. A document
+   * that fails to build gets a failed timing, so that the others are still built and reported.
+   */
+  def build(tests: Seq[Class[_ <: DocumentingTest]], threads: Int): Seq[DocumentTiming] = {
+    val executor = Executors.newFixedThreadPool(threads)
+    try {
+      val timings = tests.map { test =>
+        test -> executor.submit(new Callable[DocumentTiming] {
+          override def call(): DocumentTiming = buildDocument(test)
+        })
+      }
+      timings.map { case (test, future) =>
+        try future.get() catch {
+          case e: ExecutionException => DocumentTiming(test.getName, "?", 0, 0, Seq(e.getCause))
+        }
+      }
+    } finally executor.shutdownNow()
+  }
+
+  private def buildDocument(testClass: Class[_ <: DocumentingTest]): DocumentTiming = {
+    val (doc, outputPath) =
+      try {
+        DocumentingTest.collecting.set(true)
+        val test = testClass.getDeclaredConstructor().newInstance()
+        (test.doc, test.outputPath)
+      } catch {
+        case e: Throwable =>
+          return DocumentTiming(testClass.getName, "?", 0, 0, Seq(e))
+      } finally {
+        DocumentingTest.collecting.set(false)
+      }
+
+    val queryStart = System.nanoTime()
+    val result =
+      try DocumentingTest.runQueries(doc) catch {
+        case e: Exception =>
+          return DocumentTiming(testClass.getName, doc.id, (System.nanoTime() - queryStart) / 1000000, 0, Seq(e))
+      }
+    val queryMillis = (System.nanoTime() - queryStart) / 1000000
+    val failures = result.queryResults.flatMap(_.newFailure)
+    if (failures.nonEmpty)
+      DocumentTiming(testClass.getName, doc.id, queryMillis, 0, failures)
+    else {
+      val writeStart = System.nanoTime()
+      val writeFailures =
+        try {
+          DocumentingTest.writeResultsToFile(doc, result, outputPath)
+          Seq.empty
+        } catch {
+          case e: Exception => Seq(e)
+        }
+      DocumentTiming(testClass.getName, doc.id, queryMillis, (System.nanoTime() - writeStart) / 1000000, writeFailures)
+    }
+  }
+
+  def report(timings: Seq[DocumentTiming], out: PrintStream): Unit = {
+    val total = timings.map(_.totalMillis).sum
+    out.println(s"Built ${timings.size} documents, ${timings.count(!_.success)} failed, ${total}ms in total")
+    out.println("%10s %10s %10s  %s".format("total ms", "query ms", "write ms", "document"))
+    timings.sortBy(-_.totalMillis).foreach { t =>
+      val status = if (t.success) "" else s" FAILED (${t.failures.size})"
+      out.println("%10d %10d %10d  %s (%s)%s".format(t.totalMillis, t.queryMillis, t.writeMillis, t.documentId, t.testClass, status))
+    }
+    timings.filterNot(_.success).foreach { t =>
+      out.println()
+      out.println(s"${t.testClass}:")
+      t.failures.foreach { failure =>
+        val writer = new PrintWriter(out)
+        failure.printStackTrace(writer)
+        writer.flush()
+      }
+    }
+  }
+}
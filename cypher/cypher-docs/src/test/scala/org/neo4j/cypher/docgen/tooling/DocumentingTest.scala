@@ -58,32 +58,17 @@ trait DocumentingTest extends CypherFunSuite with Assertions with Matchers with
 
   def outputPath: String = "target/docs/dev/ql/"
 
-  runTestsFor(doc, outputPath)
+  if (!DocumentingTest.collecting.get())
+    runTestsFor(doc, outputPath)
 
   def runTestsFor(doc: Document, outputPath: String) = {
-    val result = runQueries(doc)
+    val result = DocumentingTest.runQueries(doc)
     reportResults(result)
     if (result.success) {
-      writeResultsToFile(doc, result, outputPath)
+      DocumentingTest.writeResultsToFile(doc, result, outputPath)
     }
   }
 
-  private def writeResultsToFile(doc: Document, result: TestRunResult, outputPath: String) {
-    val document: Document = contentAndResultMerger(doc, result)
-
-    val asciiDocTree = document.asciiDoc
-
-    val outputPathWithSeparator = if(outputPath.endsWith(File.separator)) outputPath else outputPath + File.separator
-    val dir = new File(outputPathWithSeparator)
-    if (!dir.exists())
-      dir.mkdirs()
-
-    val file = new File(s"$outputPathWithSeparator${doc.id}.adoc")
-    val pw = new PrintWriter(file)
-    pw.write(asciiDocTree)
-    pw.close()
-  }
-
   private def reportResults(result: TestRunResult) {
     var count = 0
 
@@ -108,13 +93,36 @@ trait DocumentingTest extends CypherFunSuite with Assertions with Matchers with
       case _:GraphVizRunResult => // Nothing to report here, unless we got a failure
     }
   }
+}
 
-  private def runQueries(doc: Document): TestRunResult = {
+object DocumentingTest {
+  /*
+  While this is set, creating a DocumentingTest doesn't run it, so that DocumentBuild can get at its Document
+   */
+  private[tooling] val collecting: ThreadLocal[java.lang.Boolean] = ThreadLocal.withInitial(() => false)
+
+  def runQueries(doc: Document): TestRunResult = {
     val builder = (db: GraphDatabaseQueryService, tx: InternalTransaction) => new QueryResultContentBuilder(new ValueFormatter(db, tx))
     val runner = new QueryRunner(builder)
     val result = runner.runQueries(contentsWithInit = doc.contentWithQueries, doc.title)
     result
   }
+
+  def writeResultsToFile(doc: Document, result: TestRunResult, outputPath: String) {
+    val document: Document = contentAndResultMerger(doc, result)
+
+    val asciiDocTree = document.asciiDoc
+
+    val outputPathWithSeparator = if(outputPath.endsWith(File.separator)) outputPath else outputPath + File.separator
+    val dir = new File(outputPathWithSeparator)
+    if (!dir.exists())
+      dir.mkdirs()
+
+    val file = new File(s"$outputPathWithSeparator${doc.id}.adoc")
+    val pw = new PrintWriter(file)
+    pw.write(asciiDocTree)
+    pw.close()
+  }
 }
 
 // Used to format values coming from Cypher. Maps, lists, nodes, relationships and paths all have custom
@@ -24,37 +24,43 @@ package org.neo4j.cypher.docgen.tooling
  * with the actual results from running the queries, formatted according to the normal
  * textual output of ExecutionResultDumper
  */
-class QueryResultContentBuilder(valueFormatter: Any => String)
+class QueryResultContentBuilder(valueFormatter: Any => String, rowLimit: Int = QueryResultContentBuilder.rowLimit)
   extends (DocsExecutionResult => Content) {
 
   override def apply(result: DocsExecutionResult): Content = {
 
     val columns = result.columns
-    var rowCount = 0
 
-    /* Need to do .toList here, to see the results. The iterator has been emptied,
-     but it is a DocsExecutionResult we have here that can still provide
-     the backing List. Yeah, it's a hack, but it allows us to both assert on the
-     results and produce text output */
-    val rows = result.toList.map { resultRow =>
-      rowCount += 1
+    /* The values have to be formatted here, while the query's transaction is still open, but
+     only the shown rows are, one at a time straight from the result's column buffers. The
+     DocsExecutionResult can still provide them all to the assertions. */
+    val rows = result.iterator.take(rowLimit).map { resultRow =>
       val values = columns.map { key =>
         val value = resultRow(key)
         valueFormatter(value)
       }.toSeq
       ResultRow(values)
-    }
+    }.toVector
 
+    // counts the rows left out by a row limit as well
+    val rowCount = result.size
     val footerRows = if (rowCount == 1) "1 row" else s"$rowCount rows"
     val footer = if (result.queryStatistics().containsUpdates)
       footerRows + ", " + result.queryStatistics().toString
     else
       footerRows
 
-    QueryResultTable(result.columns, rows, footer)
+    QueryResultTable(result.columns, rows, footer, elidedRows = rowCount - rows.size)
   }
 }
 
+object QueryResultContentBuilder {
+  /**
+   * How many rows of a result table are shown, `-Dcypher.docs.resultRowLimit=20` shows the first 20 and counts the rest.
+   */
+  val rowLimit: Int = Integer.getInteger("cypher.docs.resultRowLimit", Int.MaxValue)
+}
+
 class StatsOnlyQueryResultContentBuilder() extends (DocsExecutionResult => Content) {
 
   override def apply(result: DocsExecutionResult): Content = {
@@ -19,6 +19,8 @@
  */
 package org.neo4j.cypher.docgen.tooling
 
+import java.util.concurrent.{Callable, ExecutionException, Executors}
+
 import org.neo4j.cypher.GraphIcing
 import org.neo4j.exceptions.InternalException
 import org.neo4j.internal.kernel.api.security.SecurityContext.AUTH_DISABLED
@@ -26,7 +28,6 @@ import org.neo4j.kernel.GraphDatabaseQueryService
 import org.neo4j.kernel.api.KernelTransaction.Type
 import org.neo4j.kernel.impl.coreapi.InternalTransaction
 
-import scala.collection.immutable.Iterable
 import scala.util.{Failure, Success, Try}
 
 /**
@@ -37,6 +38,9 @@ import scala.util.{Failure, Success, Try}
  * init queries together. After running the query, we check if it updated the graph. If a query updates the graph,
  * we drop the database and create a new one. This way we can make sure that two queries don't affect each other more than
  * necessary.
+ *
+ * Groups don't share a database, so they are run concurrently on up to `QueryRunner.parallelism` threads. The results
+ * are put back in document order. Graph-vizualisations keep the numbering of a serial run, whichever group finishes first.
  */
 class QueryRunner(formatter: (GraphDatabaseQueryService, InternalTransaction) => DocsExecutionResult => Content) extends GraphIcing {
   val statsOnly: DocsExecutionResult => Content = new StatsOnlyQueryResultContentBuilder()
@@ -44,51 +48,71 @@ class QueryRunner(formatter: (GraphDatabaseQueryService, InternalTransaction) =>
 
   def runQueries(contentsWithInit: Seq[ContentWithInit], title: String): TestRunResult = {
 
-    val groupedByInits: Map[RunnableInitialization, Seq[(DatabaseQuery, QueryResultPlaceHolder)]] =
-      contentsWithInit.groupBy(_.initKey).mapValues(_.map(cwi => cwi.queryToPresent -> cwi.queryResultPlaceHolder))
-    var graphVizCounter = 0
+    val indexed = contentsWithInit.zipWithIndex
+    val groupedByInits: Seq[(RunnableInitialization, Seq[(ContentWithInit, Int)])] =
+      indexed.groupBy(_._1.initKey).toSeq.sortBy(_._2.head._2)
+    // numbered group by group in the order of the init map, like the serial runner did, so image names don't change
+    val graphVizCounters: Map[Int, Int] = indexed.groupBy(_._1.initKey).values.flatten.collect {
+      case (cwi, index) if cwi.queryResultPlaceHolder.isInstanceOf[GraphVizPlaceHolder] => index
+    }.zipWithIndex.map { case (index, n) => index -> (n + 1) }.toMap
 
-    val results: Iterable[RunResult] = groupedByInits.flatMap {
-      case (init, placeHolders) =>
+    def runGroup(init: RunnableInitialization, contents: Seq[(ContentWithInit, Int)]): Seq[(Int, RunResult)] = {
+      val dbms = new RestartableDatabase(init)
+      try {
+        if (dbms.failures.nonEmpty) dbms.failures.map(contents.head._2 -> _)
+        else {
+          contents.map { case (cwi, index) =>
+            try {
+              index -> ((cwi.queryToPresent, cwi.queryResultPlaceHolder) match {
+                case (query: DatabaseQuery, tb: TablePlaceHolder) =>
+                  runSingleQuery(dbms, query, tb.assertions, tb)
+
+                case (query: DatabaseQuery, gv: GraphVizPlaceHolder) =>
+                  Try(dbms.executeWithParams(query)) match {
+                    case Success(inner) =>
+                      GraphVizRunResult(gv, captureStateAsGraphViz(dbms.getInnerDb, title, graphVizCounters(index), gv.options))
+                    case Failure(error) =>
+                      QueryRunResult(query.prettified, gv, Left(error))
+                  }
+
+                case (query: DatabaseQuery, placeHolder: ExecutionPlanPlaceHolder) =>
+                  explainSingleQuery(dbms, query, placeHolder.assertions, placeHolder)
+
+                case (query: DatabaseQuery, placeHolder: ProfileExecutionPlanPlaceHolder) =>
+                  profileSingleQuery(dbms, query, placeHolder.assertions, placeHolder)
+
+                case _ =>
+                  ???
+              })
+            } finally {
+              dbms.nowIsASafePointToRestartDatabase()
+            }
+          }
+        }
+      } finally dbms.shutdown()
+    }
 
-        val dbms = new RestartableDatabase(init)
+    val threads = math.min(groupedByInits.size, QueryRunner.parallelism)
+    val results: Seq[(Int, RunResult)] =
+      if (threads <= 1)
+        groupedByInits.flatMap { case (init, contents) => runGroup(init, contents) }
+      else {
+        val executor = Executors.newFixedThreadPool(threads)
         try {
-          if (dbms.failures.nonEmpty) dbms.failures
-          else {
-            val result = placeHolders.map { queryAndPlaceHolder =>
-              try {
-                queryAndPlaceHolder match {
-                  case (query: DatabaseQuery, tb: TablePlaceHolder) =>
-                    runSingleQuery(dbms, query, tb.assertions, tb)
-
-                  case (query: DatabaseQuery, gv: GraphVizPlaceHolder) =>
-                    graphVizCounter = graphVizCounter + 1
-                    Try(dbms.executeWithParams(query)) match {
-                      case Success(inner) =>
-                        GraphVizRunResult(gv, captureStateAsGraphViz(dbms.getInnerDb, title, graphVizCounter, gv.options))
-                      case Failure(error) =>
-                        QueryRunResult(query.prettified, gv, Left(error))
-                    }
-
-                  case (query: DatabaseQuery, placeHolder: ExecutionPlanPlaceHolder) =>
-                    explainSingleQuery(dbms, query, placeHolder.assertions, placeHolder)
-
-                  case (query: DatabaseQuery, placeHolder: ProfileExecutionPlanPlaceHolder) =>
-                    profileSingleQuery(dbms, query, placeHolder.assertions, placeHolder)
-
-                  case _ =>
-                    ???
-                }
-              } finally {
-                dbms.nowIsASafePointToRestartDatabase()
-              }
+          val groupResults = groupedByInits.map { case (init, contents) =>
+            executor.submit(new Callable[Seq[(Int, RunResult)]] {
+              override def call(): Seq[(Int, RunResult)] = runGroup(init, contents)
+            })
+          }
+          groupResults.flatMap { future =>
+            try future.get() catch {
+              case e: ExecutionException => throw e.getCause
             }
-            result
           }
-        } finally dbms.shutdown()
-    }
+        } finally executor.shutdownNow()
+      }
 
-    TestRunResult(results.toSeq)
+    TestRunResult(results.sortBy(_._1).map(_._2))
   }
 
   private def runSingleQuery(dbms: RestartableDatabase, query: DatabaseQuery, assertions: QueryAssertions, content: TablePlaceHolder): QueryRunResult = {
@@ -232,4 +256,12 @@ case class TestRunResult(queryResults: Seq[RunResult]) {
   def foreach[U](f: RunResult => U) = queryResults.foreach(f)
 }
 
+object QueryRunner {
+  /**
+   * How many initialisation groups are run at the same time, `-Dcypher.docs.queryRunnerThreads=1` runs them one after another.
+   * Every group starts a database of its own, so this defaults to a small number rather than to the number of processors.
+   */
+  val parallelism: Int = Integer.getInteger("cypher.docs.queryRunnerThreads", 2)
+}
+
 class ExpectedExceptionNotFound(m: String) extends Exception(m)
@@ -20,13 +20,15 @@
 package org.neo4j.cypher.docgen.tooling
 
 import java.io.File
-import java.lang.Boolean.TRUE
+import java.lang.Boolean.{FALSE, TRUE}
+import java.util.concurrent.atomic.AtomicLong
 
+import com.neo4j.configuration.OnlineBackupSettings
 import com.neo4j.dbms.api.EnterpriseDatabaseManagementServiceBuilder
 import com.neo4j.kernel.enterprise.api.security.EnterpriseAuthManager
 import org.apache.commons.io.FileUtils
 import org.neo4j.configuration.GraphDatabaseSettings
-import org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAME
+import org.neo4j.configuration.GraphDatabaseSettings.{DEFAULT_DATABASE_NAME, SYSTEM_DATABASE_NAME}
 import org.neo4j.cypher.docgen.ExecutionEngineFactory
 import org.neo4j.cypher.internal.ExecutionEngine
 import org.neo4j.cypher.internal.javacompat.{GraphDatabaseCypherService, ResultSubscriber}
@@ -38,6 +40,7 @@ import org.neo4j.kernel.api.KernelTransaction.Type
 import org.neo4j.kernel.api.procedure.GlobalProcedures
 import org.neo4j.kernel.api.security.AuthToken
 import org.neo4j.kernel.impl.coreapi.InternalTransaction
+import org.neo4j.kernel.internal.GraphDatabaseAPI
 
 import scala.collection.JavaConverters._
 import scala.collection.mutable
@@ -56,16 +59,33 @@ class RestartableDatabase(init: RunnableInitialization)
   private var _failures: Seq[QueryRunResult] = null
   private var _markedForRestart = false
   private var _login: Option[(String, String)] = None
+  private var selectedDatabase: String = _
+  private val updatedDatabases = mutable.Set.empty[String]
+  private var snapshot: Option[StoreSnapshot] = None
+  private var snapshotWanted = false
 
   /*
   This is the public way of controlling when it's safe to restart the database
    */
-  def nowIsASafePointToRestartDatabase(): Unit = if (_markedForRestart) restart()
+  def nowIsASafePointToRestartDatabase(): Unit = if (_markedForRestart) {
+    if (updatedDatabases != Set(DEFAULT_DATABASE_NAME)) restart()
+    else if (snapshot.isDefined) restoreSnapshot()
+    else {
+      // this group updates the default database, so the next database it starts is worth a snapshot, unless init code
+      // set it up: that may have changed more than the store, and running it again over a restored store would repeat
+      // whatever it wrote
+      restart()
+      snapshotWanted = init.initCode.isEmpty
+    }
+  }
 
   private def createAndStartIfNecessary() {
     if (graph == null) {
-      dbFolder = new File("target/example-db" + System.nanoTime())
-      val config: Map[Setting[_], Object] = Map(GraphDatabaseSettings.auth_enabled -> TRUE)
+      // several of these run side by side, so they can't share a folder or listen on the backup port
+      dbFolder = new File("target/example-db" + System.nanoTime() + "-" + RestartableDatabase.instances.incrementAndGet())
+      val config: Map[Setting[_], Object] = Map(
+        GraphDatabaseSettings.auth_enabled -> TRUE,
+        OnlineBackupSettings.online_backup_enabled -> FALSE)
       managementService = new EnterpriseDatabaseManagementServiceBuilder(dbFolder).setConfig(config.asJava).build()
 
       //    managementService = graphDatabaseFactory(Files.createTempDirectory("test").getParent.toFile).impermanent().setConfig(config.asJava).setInternalLogProvider(logProvider).build()
@@ -74,12 +94,51 @@ class RestartableDatabase(init: RunnableInitialization)
       }
       selectDatabase(Some(DEFAULT_DATABASE_NAME))
       authManager = graph.getDependencyResolver.resolveDependency(classOf[EnterpriseAuthManager])
+      if (snapshotWanted && _failures.isEmpty) takeSnapshot()
+    }
+  }
+
+  /*
+  Copies the initialised default database, so that undoing a query that updated it only means swapping its files back,
+  instead of starting a new DBMS and running all the initialisation again. Store files are written in place, so the
+  snapshot has to be a real copy rather than hard links. Updates to other databases still restart everything.
+  Copying costs a database stop and start, so it is only done once a query of the group has updated the default
+  database, and not for groups that only read.
+   */
+  private def takeSnapshot(): Unit = {
+    val layout = managementService.database(DEFAULT_DATABASE_NAME).asInstanceOf[GraphDatabaseAPI].databaseLayout()
+    val snapshotFolder = new File(dbFolder, "snapshot")
+    withDefaultDatabaseStopped {
+      snapshot = Some(new StoreSnapshot(layout.databaseDirectory(), layout.getTransactionLogsDirectory, snapshotFolder))
     }
   }
 
+  private def restoreSnapshot(): Unit = {
+    withDefaultDatabaseStopped {
+      snapshot.get.restore()
+    }
+    updatedDatabases.clear()
+    _markedForRestart = false
+  }
+
+  private def withDefaultDatabaseStopped(f: => Unit): Unit = {
+    val system = graphs(SYSTEM_DATABASE_NAME)
+    system.execute(s"STOP DATABASE $DEFAULT_DATABASE_NAME")
+    system.awaitStatus(DEFAULT_DATABASE_NAME, "offline")
+    try f finally {
+      system.execute(s"START DATABASE $DEFAULT_DATABASE_NAME")
+      system.awaitStatus(DEFAULT_DATABASE_NAME, "online")
+    }
+    // the restarted database needs a new facade and execution engine, and its procedures registered again, but its
+    // store is initialised already
+    graphs(DEFAULT_DATABASE_NAME) = new MetaData(DEFAULT_DATABASE_NAME, Some(graphs(DEFAULT_DATABASE_NAME).failures))
+    selectDatabase(Some(selectedDatabase))
+  }
+
   private def selectDatabase(database: Option[String]): Unit = {
     if (database.isDefined) {
       val meta = graphs(database.get)
+      selectedDatabase = database.get
       graph = meta.graph
       eengine = meta.eengine
       _failures = meta.failures
@@ -127,9 +186,10 @@ class RestartableDatabase(init: RunnableInitialization)
       subscriber.init(execution)
       DocsExecutionResult(subscriber, txContext)
     } catch {
-      case e: Throwable => _markedForRestart = true; throw e
+      case e: Throwable => _markedForRestart = true; updatedDatabases += selectedDatabase; throw e
     }
     _markedForRestart = executionResult.queryStatistics().containsUpdates
+    if (_markedForRestart) updatedDatabases += selectedDatabase
     executionResult
   }
 
@@ -149,27 +209,49 @@ class RestartableDatabase(init: RunnableInitialization)
     managementService.shutdown()
     FileUtils.deleteQuietly(dbFolder)
     graphs.clear()
+    updatedDatabases.clear()
+    snapshot = None
     graph = null
     eengine = null
     _failures = null
     _markedForRestart = false
   }
 
-  class MetaData(database: String) extends GraphIcing with ExecutionEngineHelper {
+  class MetaData(database: String, restored: Option[Seq[QueryRunResult]] = None) extends GraphIcing with ExecutionEngineHelper {
     val db = managementService.database(database)
     val graph = new GraphDatabaseCypherService(db)
     val eengine = ExecutionEngineFactory.createExecutionEngineFromDb(db)
-    val failures: Seq[QueryRunResult] = initialize(init)
+    val failures: Seq[QueryRunResult] = restored match {
+      case Some(restoredFailures) =>
+        registerProcedures(init)
+        restoredFailures
+      case None =>
+        initialize(init)
+    }
 
-    private def initialize(init: RunnableInitialization): Seq[QueryRunResult] = {
-      // Register procedures and functions
+    // database management commands return before the database has actually changed state
+    def awaitStatus(name: String, status: String): Unit = {
+      val deadline = System.currentTimeMillis() + 60000
+      while (execute(s"SHOW DATABASE $name").toList.exists(_("currentStatus") != status)) {
+        if (System.currentTimeMillis() > deadline)
+          throw new IllegalStateException(s"Database $name did not become $status")
+        Thread.sleep(10)
+      }
+    }
+
+    // replaces earlier registrations, so that it can run again for a restored database
+    private def registerProcedures(init: RunnableInitialization): Unit =
       if (database == DEFAULT_DATABASE_NAME) {
         val procedureRegistry = graph.getDependencyResolver.resolveDependency(classOf[GlobalProcedures])
-        init.procedures.foreach(procedureRegistry.registerProcedure)
-        init.userDefinedFunctions.foreach(procedureRegistry.registerFunction)
-        init.userDefinedAggregationFunctions.foreach(procedureRegistry.registerAggregationFunction)
+        init.procedures.foreach(procedureRegistry.registerProcedure(_, true))
+        init.userDefinedFunctions.foreach(procedureRegistry.registerFunction(_, true))
+        init.userDefinedAggregationFunctions.foreach(procedureRegistry.registerAggregationFunction(_, true))
       }
 
+    private def initialize(init: RunnableInitialization): Seq[QueryRunResult] = {
+      // Register procedures and functions
+      registerProcedures(init)
+
       // Execute custom initialization code
       init.initCode.foreach(_.apply(graph))
 
@@ -184,3 +266,23 @@ class RestartableDatabase(init: RunnableInitialization)
   }
 
 }
+
+object RestartableDatabase {
+  private val instances = new AtomicLong()
+}
+
+/* A copy of the store and transaction logs of a stopped database */
+class StoreSnapshot(storeDirectory: File, transactionLogsDirectory: File, snapshotFolder: File) {
+  private val storeCopy = new File(snapshotFolder, "store")
+  private val transactionLogsCopy = new File(snapshotFolder, "transactions")
+
+  FileUtils.copyDirectory(storeDirectory, storeCopy)
+  FileUtils.copyDirectory(transactionLogsDirectory, transactionLogsCopy)
+
+  def restore(): Unit = {
+    FileUtils.deleteDirectory(storeDirectory)
+    FileUtils.deleteDirectory(transactionLogsDirectory)
+    FileUtils.copyDirectory(storeCopy, storeDirectory)
+    FileUtils.copyDirectory(transactionLogsCopy, transactionLogsDirectory)
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.docgen.tooling.tests
+
+import java.io.{ByteArrayOutputStream, File, PrintStream}
+import java.lang.reflect.InvocationTargetException
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+import org.neo4j.cypher.docgen.UnwindTest
+import org.neo4j.cypher.docgen.tooling.DocumentBuild.DocumentTiming
+import org.neo4j.cypher.docgen.tooling.{DocBuilder, DocumentBuild, DocumentingTest, ResultAssertions}
+import org.scalatest.Assertions
+import org.scalatest.FunSuiteLike
+import org.scalatest.Matchers
+import org.scalatest.Suite
+import org.scalatest.exceptions.TestFailedException
+
+class DocumentBuildTest extends Suite
+                        with FunSuiteLike
+                        with Assertions
+                        with Matchers {
+
+  test("finds the documenting tests without running them") {
+    val tests = DocumentBuild.discover("org.neo4j.cypher.docgen")
+
+    tests should contain(classOf[UnwindTest])
+    tests.filter(_.getName.startsWith("org.neo4j.cypher.docgen.tooling")) shouldBe empty
+  }
+
+  test("reports the slowest documents first") {
+    val timings = Seq(
+      DocumentTiming("a.Fast", "fast", 10, 1, Seq.empty),
+      DocumentTiming("a.Slow", "slow", 300, 5, Seq.empty),
+      DocumentTiming("a.Broken", "broken", 20, 0, Seq(new RuntimeException("oops"))))
+
+    val bytes = new ByteArrayOutputStream()
+    val out = new PrintStream(bytes, true, StandardCharsets.UTF_8.name())
+    DocumentBuild.report(timings, out)
+    val lines = new String(bytes.toByteArray, StandardCharsets.UTF_8).split(System.lineSeparator())
+
+    lines(0) should equal("Built 3 documents, 1 failed, 336ms in total")
+    lines(2) should endWith("slow (a.Slow)")
+    lines(3) should endWith("broken (a.Broken) FAILED (1)")
+    lines(4) should endWith("fast (a.Fast)")
+    lines.mkString("\n") should include("oops")
+  }
+
+  import DocumentBuildTest._
+
+  test("creates the documenting tests without running them, and writes their documents") {
+    val Seq(timing) = DocumentBuild.build(Seq(classOf[PassingDocument]), 1)
+
+    timing.success should equal(true)
+    timing.documentId should equal("document-build-passing")
+    PassingDocument.collectingWhenCreated should equal(Some(true))
+    new File(outputDir, "document-build-passing.adoc").isFile should equal(true)
+  }
+
+  test("does not write a document whose queries fail") {
+    val Seq(timing) = DocumentBuild.build(Seq(classOf[FailingQueryDocument]), 1)
+
+    timing.success should equal(false)
+    timing.documentId should equal("document-build-failing-query")
+    timing.writeMillis should equal(0)
+    timing.failures.head shouldBe a[TestFailedException]
+    new File(outputDir, "document-build-failing-query.adoc").exists should equal(false)
+  }
+
+  test("reports a document that can't be written") {
+    val Seq(timing) = DocumentBuild.build(Seq(classOf[UnwritableDocument]), 1)
+
+    timing.success should equal(false)
+    timing.documentId should equal("document-build-unwritable")
+    timing.failures should have size 1
+  }
+
+  test("reports a documenting test that can't be created, and still builds the others") {
+    val timings = DocumentBuild.build(Seq(classOf[ThrowingConstructorDocument], classOf[PassingDocument]), 1)
+
+    timings.map(_.success) should equal(Seq(false, true))
+    timings.head.documentId should equal("?")
+    timings.head.failures.head shouldBe an[InvocationTargetException]
+    timings.head.failures.head.getCause.getMessage should equal("can't create this")
+  }
+}
+
+object DocumentBuildTest {
+  lazy val outputDir: File = Files.createTempDirectory("document-build").toFile
+
+  object PassingDocument {
+    @volatile var collectingWhenCreated: Option[Boolean] = None
+  }
+
+  class PassingDocument extends DocumentingTest {
+    PassingDocument.collectingWhenCreated = Some(DocumentingTest.collecting.get())
+
+    override def outputPath: String = outputDir.getPath
+
+    override def doc = new DocBuilder {
+      doc("Passing", "document-build-passing")
+      query("RETURN 1 AS one", ResultAssertions(r => r.toList should equal(List(Map("one" -> 1))))) {
+        resultTable()
+      }
+    }.build()
+  }
+
+  class FailingQueryDocument extends DocumentingTest {
+    override def outputPath: String = outputDir.getPath
+
+    override def doc = new DocBuilder {
+      doc("Failing query", "document-build-failing-query")
+      query("RETURN 1 AS one", ResultAssertions(r => r.toList should equal(List(Map("one" -> 2))))) {
+        resultTable()
+      }
+    }.build()
+  }
+
+  class UnwritableDocument extends DocumentingTest {
+    // a file where the output directory should be, so the document can't be written
+    override def outputPath: String = File.createTempFile("document-build", ".adoc", outputDir).getPath
+
+    override def doc = new DocBuilder {
+      doc("Unwritable", "document-build-unwritable")
+      query("RETURN 1 AS one", ResultAssertions(r => r.toList should equal(List(Map("one" -> 1))))) {
+        resultTable()
+      }
+    }.build()
+  }
+
+  class ThrowingConstructorDocument extends DocumentingTest {
+    throw new IllegalStateException("can't create this")
+
+    override def doc = new DocBuilder {
+      doc("Throwing constructor", "document-build-throwing-constructor")
+    }.build()
+  }
+}
@@ -315,6 +315,23 @@ class DocumentAsciiDocTest extends Suite
         |""".stripMargin)
   }
 
+  test("QueryResult that leaves out rows") {
+    val doc = QueryResultTable(Seq("n"), Seq(ResultRow(Seq("1")), ResultRow(Seq("2"))), footer = "5 rows", elidedRows = 3)
+
+    doc.asciiDoc(0) should equal(
+      """.Result
+        |[role="queryresult",options="header,footer",cols="1*<m"]
+        ||===
+        || +n+
+        || +1+
+        || +2+
+        |1+|(3 more rows)
+        |1+d|5 rows
+        ||===
+        |
+        |""".stripMargin)
+  }
+
   test("QueryResult that returns data containing pipes") {
     val doc = QueryResultTable(Seq("n1|x1", "n2"), Seq(ResultRow(Seq("1|2", "2"))), footer = "1 row")
 
@@ -73,11 +73,31 @@ class QueryResultContentBuilderTest extends Suite
     result.rows should have size 1
   }
 
-  def runQuery(query: String, init: String = ""): Content = {
+  test("should show the rows within the row limit but count them all") {
+    val result = runQuery("UNWIND range(1, 5) AS x RETURN x", rowLimit = 2).asInstanceOf[QueryResultTable]
+
+    result.rows should equal(Seq(ResultRow(Seq("1")), ResultRow(Seq("2"))))
+    result.footer should equal("5 rows")
+    result.elidedRows should equal(3)
+  }
+
+  test("should only format the rows within the table's row limit") {
+    var formatted = 0
+    val result = runQuery("UNWIND range(1, 5) AS x RETURN x", shownRows = 3, formatter = x => { formatted += 1; x.toString })
+      .asInstanceOf[QueryResultTable]
+
+    formatted should equal(3)
+    result.rows should equal(Seq(ResultRow(Seq("1")), ResultRow(Seq("2")), ResultRow(Seq("3"))))
+    result.footer should equal("5 rows")
+    result.elidedRows should equal(2)
+  }
+
+  def runQuery(query: String, init: String = "", rowLimit: Int = Int.MaxValue, shownRows: Int = Int.MaxValue,
+               formatter: Any => String = x => x.toString): Content = {
     val transaction = _db.beginTx()
     try {
       if (init != "") transaction.execute(init)
-      val builder = new QueryResultContentBuilder(x => x.toString)
+      val builder = new QueryResultContentBuilder(formatter, shownRows)
       val txContext = graph.transactionalContext(transaction.asInstanceOf[InternalTransaction], query = query -> Map())
       val subscriber = new ResultSubscriber(txContext)
       val execution = eengine.execute(query,
@@ -87,7 +107,7 @@ class QueryResultContentBuilderTest extends Suite
         prePopulate = false,
         subscriber)
       subscriber.init(execution)
-      val queryResult = DocsExecutionResult(subscriber, txContext)
+      val queryResult = DocsExecutionResult(subscriber, txContext, rowLimit)
       builder.apply(queryResult)
     }
     finally {
@@ -61,15 +61,43 @@ class QueryRunnerTest extends Suite
     result should haveATestFailureOfClass(failingQuery -> classOf[SyntaxException])
   }
 
+  test("results of concurrently run initialisations come back in document order") {
+    val inits = Seq("CREATE (:A)", "CREATE (:B)", "CREATE (:C)").map(q => RunnableInitialization(initQueries = Seq(InitializationQuery(q))))
+    val contents = for (i <- 0 until 3; init <- inits) yield {
+      val placeHolder = if (i == 1) new GraphVizPlaceHolder("") else new TablePlaceHolder(NoAssertions)
+      ContentWithInit(init, Some(InitializationQuery(s"MATCH (n) RETURN n, $i")), placeHolder)
+    }
+
+    val result = new QueryRunner(formatter).runQueries(contents, "title")
+
+    result.success should equal(true)
+    result.queryResults.map(_.original) should equal(contents.map(_.queryResultPlaceHolder))
+    result.queryResults.collect {
+      case GraphVizRunResult(_, GraphViz(s)) => s.linesIterator.find(_.contains(".svg")).get
+    } should equal((1 to 3).map(n => s"""["dot", "title-$n.svg", "neoviz", ""]"""))
+  }
+
+  test("updates of one query are not seen by the next") {
+    val init = RunnableInitialization(initQueries = Seq(InitializationQuery("CREATE (:A)")))
+    val countNodes = ResultAssertions(r => r.toList should equal(List(Map("count" -> 1))))
+    val contents = Seq("CREATE (:B)", "MATCH (n) RETURN count(n) AS count", "MATCH (n) DETACH DELETE n", "MATCH (n) RETURN count(n) AS count")
+      .map(q => ContentWithInit(init, Some(InitializationQuery(q)), new TablePlaceHolder(if (q.endsWith("count")) countNodes else NoAssertions)))
+
+    val result = new QueryRunner(formatter).runQueries(contents, "title")
+
+    result.success should equal(true)
+  }
+
   private def runQuery(query: String, assertions: QueryAssertions = NoAssertions): TestRunResult =
     run(RunnableInitialization.empty, query, new TablePlaceHolder(assertions))
 
   private def run(init: RunnableInitialization, queryText: String, content: QueryResultPlaceHolder): TestRunResult = {
-    val formatter = (_: GraphDatabaseQueryService, _: InternalTransaction) => (_: DocsExecutionResult) => NoContent
     val runner = new QueryRunner(formatter)
     runner.runQueries(contentsWithInit = Seq(ContentWithInit(init, Some(InitializationQuery(queryText)), content)), "title")
   }
 
+  private val formatter = (_: GraphDatabaseQueryService, _: InternalTransaction) => (_: DocsExecutionResult) => NoContent
+
   private def haveATestFailureOfClass[EXCEPTION <: Exception](queryAndClass: (String, Class[EXCEPTION])) =
     new HasATestFailureOfClass(queryAndClass)
 
@@ -25,6 +25,8 @@ sealed abstract class SyntaxToken {
   def text: String
 
   override def toString: String = text
+
+  def appendTo(out: Appendable): Unit = out.append(toString)
 }
 
 sealed abstract class KeywordToken extends SyntaxToken {
@@ -48,6 +50,8 @@ final case class CloseGroup(text: String) extends GroupingText
 
 final case class EscapedText(text: String, quote: Char = '\"') extends SyntaxToken {
   override def toString = s"$quote$text$quote"
+
+  override def appendTo(out: Appendable): Unit = out.append(quote).append(text).append(quote)
 }
 
 final case class AnyText(text: String) extends SyntaxToken
@@ -64,24 +68,93 @@ trait Prettifying {
     * @param keepMyNewlines if this is `true`the prettifier will keep original new lines
     */
   def apply(input: String, keepMyNewlines: Boolean): String
+
+  /**
+    * Writes the prettified input to `out` instead of returning it.
+    */
+  def appendTo(out: Appendable, input: String, keepMyNewlines: Boolean): Unit = out.append(apply(input, keepMyNewlines))
 }
 
-case object Prettifier extends Prettifying {
+/**
+  * Turns a query into the tokens the prettifier lays out.
+  */
+trait SyntaxTokenParser {
+  def parse(input: String): Seq[SyntaxToken]
+}
 
-  override def apply(input: String, keepMyNewlines: Boolean = false): String = {
-    val parser = new PrettifierParser(keepMyNewlines)
-    val builder = new StringBuilder
+/**
+  * Uses the parboiled based [[PrettifierParser]], or with `-Dcypher.docs.lexingPrettifier=true` the single pass
+  * [[PrettifierLexer]], which produces the same tokens without backtracking, for long generated queries.
+  */
+case object Prettifier extends TokenPrettifier(lexing = java.lang.Boolean.getBoolean("cypher.docs.lexingPrettifier"))
 
-    val parsedTokens = parser.parse(input)
-    var tokens = flattenTokens(parsedTokens)
+/**
+  * @param lexing whether queries are split into tokens by [[PrettifierLexer]] rather than [[PrettifierParser]]
+  */
+class TokenPrettifier(val lexing: Boolean) extends Prettifying {
 
-    while (tokens.nonEmpty) {
-      val tail = tokens.tail
-      builder ++= insertBreak(tokens.head, tail)
-      tokens = tail
+  private def newParser(keepMyNewlines: Boolean): SyntaxTokenParser =
+    if (lexing) new PrettifierLexer(keepMyNewlines) else new PrettifierParser(keepMyNewlines)
+
+  /**
+    * The same setup queries get prettified over and over again during a docs build,
+    * so results are kept in a bounded, least-recently-used cache.
+    */
+  val cacheSize: Int = 4096
+
+  private val cache: java.util.Map[(String, Boolean), String] = java.util.Collections.synchronizedMap(
+    new java.util.LinkedHashMap[(String, Boolean), String](cacheSize, 0.75f, true) {
+      override protected def removeEldestEntry(eldest: java.util.Map.Entry[(String, Boolean), String]): Boolean = size() > cacheSize
+    })
+
+  // parboiled builds its rule tree lazily inside the parser, so parsers aren't shared between threads
+  private val parsers: ThreadLocal[(SyntaxTokenParser, SyntaxTokenParser)] = ThreadLocal.withInitial(() =>
+    (newParser(keepMyNewlines = false), newParser(keepMyNewlines = true)))
+
+  override def apply(input: String, keepMyNewlines: Boolean = false): String = {
+    val key = (input, keepMyNewlines)
+    val cached = cache.get(key)
+    if (cached != null)
+      cached
+    else {
+      val result = prettify(input, keepMyNewlines)
+      cache.put(key, result)
+      result
     }
+  }
 
-    builder.toString()
+  /**
+    * Queries already in the cache are copied from there, others are written token by token
+    * without being added to the cache, so large generated queries don't have to be held as a whole.
+    */
+  override def appendTo(out: Appendable, input: String, keepMyNewlines: Boolean = false): Unit = {
+    val cached = cache.get((input, keepMyNewlines))
+    if (cached != null)
+      out.append(cached)
+    else
+      prettify(out, input, keepMyNewlines)
+  }
+
+  private def prettify(input: String, keepMyNewlines: Boolean): String = {
+    val builder = new java.lang.StringBuilder
+    prettify(builder, input, keepMyNewlines)
+    builder.toString
+  }
+
+  private def prettify(out: Appendable, input: String, keepMyNewlines: Boolean): Unit = {
+    val (plainParser, newlineParser) = parsers.get()
+    val parser = if (keepMyNewlines) newlineParser else plainParser
+
+    val tokens = flattenTokens(parser.parse(input)).toIndexedSeq
+    val last = tokens.length - 1
+    var i = 0
+    while (i <= last) {
+      val token = tokens(i)
+      token.appendTo(out)
+      if (i < last)
+        out.append(separator(token, tokens(i + 1)))
+      i += 1
+    }
   }
 
   def flattenTokens(tokens: Seq[SyntaxToken]): Seq[SyntaxToken] = {
@@ -106,54 +179,53 @@ case object Prettifier extends Prettifying {
   val space: String = " "
   val newline: String = System.lineSeparator()
 
-  def insertBreak(token: SyntaxToken, tail: Seq[SyntaxToken]): String = {
-    if (tail.isEmpty)
-      token.toString
-    else {
-      (token, tail.head) match {
-        // FOREACH : <NEXT>
-        case (_: SyntaxToken,         _) if token.text.endsWith("|") => token.toString + space
-        case (_: SyntaxToken,         _) if token.text.endsWith(":") => token.toString + space
+  /**
+    * @return what goes between `token` and the `next` one: nothing, a space or a newline
+    */
+  def separator(token: SyntaxToken, next: SyntaxToken): String = {
+    (token, next) match {
+      // FOREACH : <NEXT>
+      case (_: SyntaxToken,         _) if token.text.endsWith("|") => space
+      case (_: SyntaxToken,         _) if token.text.endsWith(":") => space
 
-        // don't put space or newline after or before a newline token
-        case (_:NewlineToken,         _)                             => token.toString
-        case (_,                      _:NewlineToken)                => token.toString
+      // don't put space or newline after or before a newline token
+      case (_:NewlineToken,         _)                             => ""
+      case (_,                      _:NewlineToken)                => ""
 
-        // <NON-BREAKING-KW> <NEXT>
-        case (_: NonBreakingKeywords, _:SyntaxToken)                 => token.toString + space
+      // <NON-BREAKING-KW> <NEXT>
+      case (_: NonBreakingKeywords, _:SyntaxToken)                 => space
 
-        // <HEAD> <BREAKING-KW>
-        case (_:SyntaxToken,          _:BreakingKeywords)            => token.toString + newline
+      // <HEAD> <BREAKING-KW>
+      case (_:SyntaxToken,          _:BreakingKeywords)            => newline
 
-        // Never break between keywords
-        case (_:KeywordToken,         _:KeywordToken)                => token.toString + space
+      // Never break between keywords
+      case (_:KeywordToken,         _:KeywordToken)                => space
 
-        // <KW> <OPEN-GROUP>
-        case (_:KeywordToken,         _:OpenGroup)                   => token.toString + space
+      // <KW> <OPEN-GROUP>
+      case (_:KeywordToken,         _:OpenGroup)                   => space
 
-        // <{> <NEXT>
-        case (_@OpenGroup("{"),       _:SyntaxToken)                 => token.toString + space
+      // <{> <NEXT>
+      case (_@OpenGroup("{"),       _:SyntaxToken)                 => space
 
-        // <CLOSE-GROUP> <KW>
-        case (_:CloseGroup,           _:KeywordToken)                => token.toString + space
+      // <CLOSE-GROUP> <KW>
+      case (_:CloseGroup,           _:KeywordToken)                => space
 
-        // <GROUPING> <NEXT>
-        case (_:GroupingText,         _:SyntaxToken)                 => token.toString
+      // <GROUPING> <NEXT>
+      case (_:GroupingText,         _:SyntaxToken)                 => ""
 
-        // <HEAD> <{>
-        case (_:SyntaxToken,          OpenGroup("{"))                => token.toString + space
+      // <HEAD> <{>
+      case (_:SyntaxToken,          OpenGroup("{"))                => space
 
-        // <HEAD> <}>
-        case (_:SyntaxToken,          CloseGroup("}"))               => token.toString + space
+      // <HEAD> <}>
+      case (_:SyntaxToken,          CloseGroup("}"))               => space
 
-        // <HEAD> <GROUPING>
-        case (_:SyntaxToken,          _:GroupingText)                => token.toString
+      // <HEAD> <GROUPING>
+      case (_:SyntaxToken,          _:GroupingText)                => ""
 
-        // <HEAD> <COMMA>
-        case (_:SyntaxToken,          Comma)                         => token.toString
-        // default
-        case _                                                       => token.toString + space
-      }
+      // <HEAD> <COMMA>
+      case (_:SyntaxToken,          Comma)                         => ""
+      // default
+      case _                                                       => space
     }
   }
 }
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.docgen.tooling
+
+import java.util.Locale
+
+import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
+
+/**
+  * A hand written alternative to [[PrettifierParser]] that produces the same tokens in a single pass.
+  *
+  * Keywords are looked up by their first word, which is always the whole identifier at the current
+  * position, and only the few keywords starting with that word are tried, in the same order as the
+  * alternatives of the parser. Like the parser, lexing stops at the first input it can't tokenize.
+  */
+class PrettifierLexer(val keepMyNewlines: Boolean) extends SyntaxTokenParser {
+
+  import PrettifierLexer._
+
+  override def parse(input: String): Seq[SyntaxToken] = {
+    val tokens = new ArrayBuffer[SyntaxToken]
+    new Scan(input).tokenList(0, tokens, interior = false)
+    tokens.toList
+  }
+
+  private class Scan(input: String) {
+    private val length = input.length
+
+    /**
+      * Tokens separated by whitespace, as many as there are.
+      *
+      * @return the position after the last token
+      */
+    def tokenList(start: Int, out: ArrayBuffer[SyntaxToken], interior: Boolean): Int = {
+      var end = token(start, out, interior)
+      if (end < 0)
+        return start
+      var next = token(whiteSpace(end), out, interior)
+      while (next >= 0) {
+        end = next
+        next = token(whiteSpace(end), out, interior)
+      }
+      end
+    }
+
+    /**
+      * @return the position after the token, or -1 if there is no token at `start`, in which case nothing is added to `out`
+      */
+    private def token(start: Int, out: ArrayBuffer[SyntaxToken], interior: Boolean): Int = {
+      if (start >= length)
+        return -1
+      if (interior) {
+        val end = keywordEnd(start, interiorKeyword)
+        if (end >= 0) {
+          out += NonBreakingKeywords(input.substring(start, end))
+          return end
+        }
+      }
+      val afterKeyword = keyword(start, out)
+      if (afterKeyword >= 0)
+        return afterKeyword
+      val c = input.charAt(start)
+      if (c == ',') {
+        out += Comma
+        return start + 1
+      }
+      if (c == '\'' || c == '"') {
+        val end = escapedText(start, c, out)
+        if (end >= 0)
+          return end
+      }
+      val textEnd = anyTextEnd(start)
+      if (textEnd > start) {
+        out += AnyText(input.substring(start, textEnd))
+        return textEnd
+      }
+      if (keepMyNewlines && (c == '\n' || c == '\r')) {
+        out += NewlineToken(c.toString)
+        return start + 1
+      }
+      grouping(start, out)
+    }
+
+    private def keyword(start: Int, out: ArrayBuffer[SyntaxToken]): Int = {
+      val wordEnd = identifierEnd(start)
+      if (wordEnd == start)
+        return -1
+      val candidates = keywordsByFirstWord.getOrElse(input.substring(start, wordEnd).toLowerCase(Locale.ROOT), Nil).iterator
+      while (candidates.hasNext) {
+        val candidate = candidates.next()
+        val end = keywordEnd(start, candidate.words)
+        if (end >= 0) {
+          candidate.kind match {
+            case NonBreaking =>
+              out += NonBreakingKeywords(input.substring(start, end))
+              return end
+            case Breaking =>
+              out += BreakingKeywords(input.substring(start, end))
+              return end
+            case JoinedWithUpdating =>
+              val updatingStart = whiteSpaceIncludingNewlines(end)
+              val updating = updatingKeywords.iterator.map(keywordEnd(updatingStart, _)).find(_ >= 0)
+              if (updating.isDefined) {
+                out += BreakingKeywords(s"${input.substring(start, end)} ${input.substring(updatingStart, updating.get)}")
+                return updating.get
+              }
+          }
+        }
+      }
+      -1
+    }
+
+    /**
+      * Matches the words of a keyword, ignoring case, separated by any whitespace and
+      * each not followed by an identifier character.
+      */
+    private def keywordEnd(start: Int, words: Array[String]): Int = {
+      var position = start
+      var i = 0
+      while (i < words.length) {
+        if (i > 0)
+          position = whiteSpaceIncludingNewlines(position)
+        val word = words(i)
+        if (!input.regionMatches(true, position, word, 0, word.length))
+          return -1
+        position += word.length
+        if (position < length && isIdentifierPart(input.charAt(position)))
+          return -1
+        i += 1
+      }
+      position
+    }
+
+    private def escapedText(start: Int, quote: Char, out: ArrayBuffer[SyntaxToken]): Int = {
+      val text = new java.lang.StringBuilder
+      var position = start + 1
+      while (position < length) {
+        val c = input.charAt(position)
+        if (c == quote) {
+          out += EscapedText(text.toString, quote)
+          return position + 1
+        }
+        if (c == '\\') {
+          position = escapedChar(position + 1, text)
+          if (position < 0)
+            return -1
+        } else {
+          text.append(c)
+          position += 1
+        }
+      }
+      -1
+    }
+
+    private def escapedChar(start: Int, text: java.lang.StringBuilder): Int = {
+      if (start >= length)
+        return -1
+      input.charAt(start) match {
+        case c@('\\' | '\'' | '"') => text.append(c); start + 1
+        case 'b' => text.append('\b'); start + 1
+        case 'f' => text.append('\f'); start + 1
+        case 'n' => text.append('\n'); start + 1
+        case 'r' => text.append('\r'); start + 1
+        case 't' => text.append('\t'); start + 1
+        case 'u' => codePoint(start + 1, 4, text)
+        case 'U' => codePoint(start + 1, 8, text)
+        case _ => -1
+      }
+    }
+
+    private def codePoint(start: Int, digits: Int, text: java.lang.StringBuilder): Int = {
+      if (start + digits > length)
+        return -1
+      var value = 0L
+      var i = start
+      while (i < start + digits) {
+        val digit = Character.digit(input.charAt(i), 16)
+        if (digit < 0)
+          return -1
+        value = value * 16 + digit
+        i += 1
+      }
+      if (value > Character.MAX_CODE_POINT)
+        return -1
+      text.appendCodePoint(value.toInt)
+      start + digits
+    }
+
+    private def anyTextEnd(start: Int): Int = {
+      var position = start
+      while (position < length && !isTextStop(input.charAt(position)))
+        position += 1
+      position
+    }
+
+    private def grouping(start: Int, out: ArrayBuffer[SyntaxToken]): Int = {
+      val open = input.charAt(start)
+      val close = open match {
+        case '(' => ')'
+        case '{' => '}'
+        case '[' => ']'
+        case _ => return -1
+      }
+      val inner = new ArrayBuffer[SyntaxToken]
+      val end = whiteSpace(tokenList(whiteSpace(start + 1), inner, interior = true))
+      if (end < length && input.charAt(end) == close) {
+        out += GroupToken(open.toString, close.toString, inner.toList)
+        end + 1
+      } else
+        -1
+    }
+
+    private def identifierEnd(start: Int): Int = {
+      var position = start
+      while (position < length && isIdentifierPart(input.charAt(position)))
+        position += 1
+      position
+    }
+
+    /**
+      * The whitespace between tokens, which doesn't include newlines when they are kept.
+      */
+    private def whiteSpace(start: Int): Int = skipWhiteSpace(start, !keepMyNewlines)
+
+    /**
+      * The whitespace within keywords, which always includes newlines.
+      */
+    private def whiteSpaceIncludingNewlines(start: Int): Int = skipWhiteSpace(start, includeNewlines = true)
+
+    private def skipWhiteSpace(start: Int, includeNewlines: Boolean): Int = {
+      var position = start
+      var skipping = true
+      while (skipping && position < length) {
+        val c = input.charAt(position)
+        if (isWhiteSpace(c) && (includeNewlines || (c != '\n' && c != '\r')))
+          position += 1
+        else if (c == '/' && position + 1 < length && input.charAt(position + 1) == '*') {
+          val end = input.indexOf("*/", position + 2)
+          if (end < 0)
+            skipping = false
+          else
+            position = end + 2
+        } else if (c == '/' && position + 1 < length && input.charAt(position + 1) == '/') {
+          val end = lineCommentEnd(position + 2)
+          if (end < 0)
+            skipping = false
+          else
+            position = end
+        } else
+          skipping = false
+      }
+      position
+    }
+
+    private def lineCommentEnd(start: Int): Int = {
+      var position = start
+      while (position < length && input.charAt(position) != '\n' && input.charAt(position) != '\r')
+        position += 1
+      if (position == length)
+        position
+      else if (input.charAt(position) == '\n')
+        position + 1
+      else if (position + 1 < length && input.charAt(position + 1) == '\n')
+        position + 2
+      else
+        -1
+    }
+  }
+}
+
+object PrettifierLexer {
+
+  private sealed trait KeywordKind
+  private case object NonBreaking extends KeywordKind
+  private case object Breaking extends KeywordKind
+  private case object JoinedWithUpdating extends KeywordKind
+
+  private case class Keyword(words: Array[String], kind: KeywordKind)
+
+  // In the order of the alternatives in PrettifierParser, the first one that matches wins
+  private val nonBreakingKeywords = Seq("WITH HEADERS", "IS UNIQUE", "ALL", "NULL", "TRUE", "FALSE", "DISTINCT", "END",
+    "NOT", "HAS", "ANY", "NONE", "SINGLE", "OR", "XOR", "AND", "AS", "IN", "IS", "UNIQUE", "BY", "ASSERT", "ASC", "DESC",
+    "SCAN", "FROM", "EXISTS", "STARTS WITH", "ENDS WITH", "CONTAINS", "YIELD", "FOR")
+
+  private val joinedBreakingKeywords = Seq("ON CREATE", "ON MATCH")
+
+  private val plainBreakingKeywords = Seq("LOAD CSV", "ORDER BY", "CREATE INDEX ON", "CREATE INDEX", "DROP INDEX ON",
+    "DROP INDEX", "CREATE CONSTRAINT ON", "CREATE CONSTRAINT", "DROP CONSTRAINT ON", "DROP CONSTRAINT",
+    "USING PERIODIC COMMIT", "USING INDEX", "USING SCAN", "USING JOIN ON", "OPTIONAL MATCH", "DETACH DELETE", "START",
+    "MATCH", "WHERE", "WITH", "RETURN", "SKIP", "LIMIT", "ASC", "DESC", "ON", "WHEN", "CASE", "THEN", "ELSE",
+    "ASSERT", "SCAN", "CALL", "UNION", "UNWIND")
+
+  private val updatingBreakingKeywords = Seq("CREATE", "SET", "DELETE", "REMOVE", "FOREACH", "MERGE")
+
+  private def words(keyword: String): Array[String] = keyword.toLowerCase(Locale.ROOT).split(' ')
+
+  private val updatingKeywords: Seq[Array[String]] = updatingBreakingKeywords.map(words)
+
+  private val interiorKeyword: Array[String] = words("WHERE")
+
+  private val keywordsByFirstWord: Map[String, Seq[Keyword]] = {
+    val all = nonBreakingKeywords.map(k => Keyword(words(k), NonBreaking)) ++
+      joinedBreakingKeywords.map(k => Keyword(words(k), JoinedWithUpdating)) ++
+      plainBreakingKeywords.map(k => Keyword(words(k), Breaking)) ++
+      updatingBreakingKeywords.map(k => Keyword(words(k), Breaking))
+    val byFirstWord = mutable.LinkedHashMap.empty[String, Seq[Keyword]]
+    for (keyword <- all)
+      byFirstWord(keyword.words.head) = byFirstWord.getOrElse(keyword.words.head, Seq.empty) :+ keyword
+    byFirstWord.toMap
+  }
+
+  private def isIdentifierPart(c: Char): Boolean = Character.isJavaIdentifierPart(c)
+
+  private def isWhiteSpace(c: Char): Boolean = Character.isWhitespace(c) || Character.isSpaceChar(c)
+
+  private def isTextStop(c: Char): Boolean = " \n\r\t\f(){}[]".indexOf(c) >= 0
+}
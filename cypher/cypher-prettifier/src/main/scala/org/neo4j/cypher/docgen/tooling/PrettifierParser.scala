@@ -25,7 +25,7 @@ import org.neo4j.cypher.internal.v4_0.parser.WSChar
 import org.neo4j.exceptions.SyntaxException
 import org.parboiled.scala._
 
-class PrettifierParser(val keepMyNewlines: Boolean) extends Parser with Base with Strings {
+class PrettifierParser(val keepMyNewlines: Boolean) extends Parser with Base with Strings with SyntaxTokenParser {
 
   def main: Rule1[Seq[SyntaxToken]] = rule("main") {
     oneOrMoreExteriorToken | noTokens
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.cypher.docgen.tooling
+
+/**
+ * Runs the whole Prettifier corpus through the lexer backend, checking on every query that the lexer
+ * produces exactly the tokens the parboiled grammar does before comparing the prettified output.
+ */
+class LexingPrettifierTest extends PrettifierTest {
+
+  test("should unescape quotes in strings like the parser") {
+    actual("""match (n) where n.name = 'it\'s' return "a \"b\"" """) should equal(
+      String.format("MATCH (n)%nWHERE n.name = 'it's'%nRETURN \"a \"b\"\""))
+  }
+
+  test("should not treat keyword prefixes of identifiers as keywords") {
+    actual("match (n) return n.created, n.returns") should equal(String.format("MATCH (n)%nRETURN n.created, n.returns"))
+  }
+
+  override protected val prettifier: TokenPrettifier = new TokenPrettifier(lexing = true)
+
+  override protected def actual(text: String): String = {
+    sameTokens(text, keepMyNewlines = false)
+    super.actual(text)
+  }
+
+  override protected def actualKeepNL(text: String): String = {
+    sameTokens(text, keepMyNewlines = true)
+    super.actualKeepNL(text)
+  }
+
+  private def sameTokens(text: String, keepMyNewlines: Boolean) =
+    new PrettifierLexer(keepMyNewlines).parse(text) should equal(new PrettifierParser(keepMyNewlines).parse(text))
+}
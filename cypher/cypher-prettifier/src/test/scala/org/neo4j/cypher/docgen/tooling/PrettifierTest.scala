@@ -197,9 +197,30 @@ class PrettifierTest extends Suite
     ))
   }
 
-  private def actual(text: String) = Prettifier(text)
+  test("should reuse the prettified query for repeated input") {
+    val query = "match (n) where n.name='B' return n"
+    actual(query) should be theSameInstanceAs actual(query)
+    actualKeepNL(query) should equal(expected("MATCH (n)%nWHERE n.name='B'%nRETURN n"))
+  }
+
+  test("should prettify concurrently") {
+    val ids = 1 to 50
+    val results = ids.par.map(i => actual(s"match (n) where n.id=$i return n")).seq
+    results should equal(ids.map(i => expected(s"MATCH (n)%nWHERE n.id=$i%nRETURN n")))
+  }
+
+  test("should stream the same output it returns") {
+    val queries = Seq("match (n) where n.name='B' return n", "create (n {name: \"it's\"}) return n", "")
+    val out = new java.io.StringWriter
+    queries.foreach(query => prettifier.appendTo(out, query))
+    out.toString should equal(queries.map(actual).mkString)
+  }
+
+  protected def prettifier: TokenPrettifier = Prettifier
+
+  protected def actual(text: String): String = prettifier(text)
 
-  private def actualKeepNL(text: String) = Prettifier(text, keepMyNewlines = true)
+  protected def actualKeepNL(text: String): String = prettifier(text, keepMyNewlines = true)
 
   private def expected(text: String) = String.format(text)
 }
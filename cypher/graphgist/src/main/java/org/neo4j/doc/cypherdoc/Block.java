@@ -48,13 +48,6 @@ final class Block
 
     static Block getBlock( List<String> lines )
     {
-        for ( BlockType type : BlockType.values() )
-        {
-            if ( type.isA( lines ) )
-            {
-                return new Block( lines, type );
-            }
-        }
-        throw new IllegalArgumentException( "Unidentifiable block, starting with:\n" + lines.get( 0 ) );
+        return new Block( lines, BlockClassifier.classify( lines ) );
     }
 }
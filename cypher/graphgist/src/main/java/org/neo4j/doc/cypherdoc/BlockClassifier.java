@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.doc.cypherdoc;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides the {@link BlockType} of a block by looking at its header once.
+ *
+ * <pre>
+ * = Title             TITLE
+ * // command          a command comment, looked up by its first word
+ * [source, lang, ..]  a code block, looked up by the attribute words of the
+ *                     first line, or of the second line when the first one
+ *                     is an [[anchor]]
+ * anything else       TEXT
+ * </pre>
+ */
+final class BlockClassifier
+{
+    private static final Map<String,BlockType> COMMANDS = new HashMap<>();
+    private static final Map<String,BlockType> LANGUAGES = new HashMap<>();
+
+    static
+    {
+        COMMANDS.put( "hide", BlockType.HIDE );
+        COMMANDS.put( "setup", BlockType.SETUP );
+        COMMANDS.put( "output", BlockType.OUTPUT );
+        COMMANDS.put( "profile", BlockType.PROFILE );
+        COMMANDS.put( "table", BlockType.TABLE );
+        COMMANDS.put( "sqltable", BlockType.SQL_TABLE );
+        COMMANDS.put( "graph_result", BlockType.GRAPH_RESULT );
+        COMMANDS.put( "graph", BlockType.GRAPH );
+        COMMANDS.put( "console", BlockType.CONSOLE );
+
+        LANGUAGES.put( "querytest", BlockType.QUERYTEST );
+        LANGUAGES.put( "profiletest", BlockType.PROFILETEST );
+        LANGUAGES.put( "cypher", BlockType.CYPHER );
+        LANGUAGES.put( "sql", BlockType.SQL );
+    }
+
+    private BlockClassifier()
+    {
+    }
+
+    static BlockType classify( List<String> lines )
+    {
+        if ( lines.isEmpty() )
+        {
+            return BlockType.TEXT;
+        }
+        String first = lines.get( 0 );
+        if ( first.isEmpty() )
+        {
+            return BlockType.TEXT;
+        }
+        switch ( first.charAt( 0 ) )
+        {
+        case '=':
+            return first.startsWith( "==" ) ? BlockType.TEXT : BlockType.TITLE;
+        case '/':
+            return first.startsWith( "//" ) ? command( first ) : BlockType.TEXT;
+        case '[':
+            BlockType type = codeBlock( first );
+            if ( type == BlockType.TEXT && lines.size() > 4 && first.startsWith( "[[" ) )
+            {
+                type = codeBlock( lines.get( 1 ) );
+            }
+            return type;
+        default:
+            return BlockType.TEXT;
+        }
+    }
+
+    private static BlockType command( String line )
+    {
+        int start = line.startsWith( "// " ) ? 3 : 2;
+        int end = endOfWord( line, start );
+        String word = line.substring( start, end );
+        if ( word.equals( "file" ) )
+        {
+            return end < line.length() && line.charAt( end ) == ':' ? BlockType.FILE : BlockType.TEXT;
+        }
+        return COMMANDS.getOrDefault( word, BlockType.TEXT );
+    }
+
+    /**
+     * Scans the attribute words of a header line once. When several languages are present,
+     * the one declared first in {@link BlockType} wins.
+     */
+    private static BlockType codeBlock( String line )
+    {
+        boolean source = false;
+        boolean json = false;
+        boolean role = false;
+        boolean parameters = false;
+        BlockType type = null;
+        int position = 0;
+        int length = line.length();
+        while ( position < length )
+        {
+            if ( !isWordPart( line.charAt( position ) ) )
+            {
+                position++;
+                continue;
+            }
+            int end = endOfWord( line, position );
+            String word = line.substring( position, end );
+            position = end;
+            switch ( word )
+            {
+            case "source":
+                source = true;
+                break;
+            case "json":
+                json = true;
+                break;
+            case "role":
+                role = true;
+                break;
+            case "parameters":
+                parameters = true;
+                break;
+            default:
+                BlockType language = LANGUAGES.get( word );
+                if ( language != null && (type == null || language.ordinal() < type.ordinal()) )
+                {
+                    type = language;
+                }
+            }
+        }
+        if ( json && role && parameters && (type == null || BlockType.PARAMETERS.ordinal() < type.ordinal()) )
+        {
+            type = BlockType.PARAMETERS;
+        }
+        return source && type != null ? type : BlockType.TEXT;
+    }
+
+    private static int endOfWord( String line, int start )
+    {
+        int end = start;
+        while ( end < line.length() && isWordPart( line.charAt( end ) ) )
+        {
+            end++;
+        }
+        return end;
+    }
+
+    private static boolean isWordPart( char c )
+    {
+        return Character.isLetterOrDigit( c ) || c == '_';
+    }
+}
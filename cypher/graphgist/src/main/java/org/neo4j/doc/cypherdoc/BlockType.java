@@ -26,17 +26,13 @@ import org.apache.commons.lang3.StringUtils;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
-import java.sql.Connection;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
+import java.security.DigestOutputStream;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,15 +46,6 @@ enum BlockType
 {
     TITLE
     {
-        @Override
-        boolean isA( List<String> block )
-        {
-            int size = block.size();
-            return size > 0 &&
-                ( ( block.get( 0 ).startsWith( "=" )
-                 && !block.get( 0 ).startsWith( "==" )));
-        }
-
         @Override
         String process( Block block, State state )
         {
@@ -77,12 +64,6 @@ enum BlockType
         {
             return OutputHelper.passthroughMarker( "hide-query", "span", "simpara" );
         }
-
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isACommentWith( block, "hide" );
-        }
     },
     SETUP
     {
@@ -91,12 +72,6 @@ enum BlockType
         {
             return OutputHelper.passthroughMarker( "setup-query", "span", "simpara" );
         }
-
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isACommentWith( block, "setup" );
-        }
     },
     OUTPUT
     {
@@ -105,12 +80,6 @@ enum BlockType
         {
             return OutputHelper.passthroughMarker( "query-output", "span", "simpara" );
         }
-
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isACommentWith( block, "output" );
-        }
     },
     PROFILE
     {
@@ -119,12 +88,6 @@ enum BlockType
         {
             return AsciidocHelper.createOutputSnippet( state.latestResult.profile );
         }
-
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isACommentWith( block, "profile" );
-        }
     },
     TABLE
     {
@@ -133,25 +96,13 @@ enum BlockType
         {
             return AsciidocHelper.createQueryResultSnippet( state.latestResult.text );
         }
-
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isACommentWith( block, "table" );
-        }
     },
     SQL_TABLE
     {
         @Override
         String process( Block block, State state )
         {
-            return AsciidocHelper.createQueryResultSnippet( state.latestSqlResult.text );
-        }
-
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isACommentWith( block, "sqltable" );
+            return AsciidocHelper.createQueryResultSnippet( state.latestSqlResult.shownText );
         }
     },
     QUERYTEST
@@ -166,28 +117,22 @@ enum BlockType
             List<String> tests = block.lines.subList( 1, block.lines.size() - 1 );
             boolean checkCypherResults = state.latestResult != null && state.latestResult != state.testedResult;
             boolean checkSqlResults = state.latestSqlResult != null && state.latestSqlResult != state.testedSqlResult;
-            String result = checkCypherResults ? state.latestResult.text : null;
-            String sqlResult = checkSqlResults ? state.latestSqlResult.text : null;
-            List<String> failures = new ArrayList<>();
-            List<String> sqlFailures = new ArrayList<>();
-            for ( String test : tests )
+            FragmentMatcher matcher = new FragmentMatcher( tests );
+            if ( checkCypherResults )
             {
-                if ( result != null && !result.contains( test ) )
-                {
-                    failures.add( test );
-                }
-                if ( sqlResult != null && !sqlResult.contains( test ) )
+                Map<String,String> failures = matcher.missing( state.latestResult.text );
+                if ( !failures.isEmpty() )
                 {
-                    sqlFailures.add( test );
+                    throw new TestFailureException( state.latestResult, failures );
                 }
             }
-            if ( !failures.isEmpty() )
-            {
-                throw new TestFailureException( state.latestResult, failures );
-            }
-            if ( !sqlFailures.isEmpty() )
+            if ( checkSqlResults )
             {
-                throw new TestFailureException( state.latestSqlResult, sqlFailures );
+                Map<String,String> sqlFailures = matcher.missing( state.latestSqlResult.text );
+                if ( !sqlFailures.isEmpty() )
+                {
+                    throw new TestFailureException( state.latestSqlResult, sqlFailures );
+                }
             }
 
             state.testedResult = state.latestResult;
@@ -195,12 +140,6 @@ enum BlockType
 
             return "";
         }
-
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isCodeBlock( "querytest", block );
-        }
     },
     PROFILETEST
     {
@@ -213,37 +152,19 @@ enum BlockType
             }
             List<String> tests = block.lines.subList( 1, block.lines.size() - 1 );
             String profile = state.latestResult.profile;
-            List<String> failures = new ArrayList<>();
-            for ( String test : tests )
+            if ( profile != null )
             {
-                if ( profile != null && !profile.contains( test ) )
+                Map<String,String> failures = new FragmentMatcher( tests ).missing( profile );
+                if ( !failures.isEmpty() )
                 {
-                    failures.add( test );
+                    throw new TestFailureException( state.latestResult, failures );
                 }
             }
-            if ( !failures.isEmpty() )
-            {
-                throw new TestFailureException( state.latestResult, failures );
-            }
             return "";
         }
-
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isCodeBlock( "profiletest", block );
-        }
     },
     PARAMETERS
     {
-        @Override
-        boolean isA( List<String> block )
-        {
-            String first = block.get( 0 );
-            return isCodeBlock( "json", block ) && first.contains( "role" )
-                   && first.contains( "parameters" );
-        }
-
         @Override
         String process( Block block, State state )
         {
@@ -273,67 +194,91 @@ enum BlockType
     },
     CYPHER
     {
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isCodeBlock( "cypher", block );
-        }
-
         @Override
         String process( Block block, State state )
         {
             String firstLine = block.lines.get( 0 );
             boolean exec = !(firstLine.contains( "noexec" ) || firstLine.contains( "hideexec" ));
             boolean periodic = firstLine.contains( "periodic" );
+            int batchSize = periodic ? 0 : batchSize( firstLine );
             List<String> statements = getQueriesBlockContent( block );
             List<String> prettifiedStatements = new ArrayList<>();
             String webQuery;
             String fileQuery;
-            for ( String query : statements )
+            Map<String,Object> parameters = state.parameters;
+            if ( state.parameterizeFiles && !state.knownFiles.isEmpty() )
             {
-                webQuery = query;
-                fileQuery = query;
-                for ( String file : state.knownFiles )
+                parameters = new HashMap<>( state.parameters );
+                for ( int i = 0; i < state.knownFiles.size(); i++ )
                 {
-                    File absolutePath = new File( state.parentDirectory, file );
-                    String fileUrl = absolutePath.toURI().toString();
-                    fileQuery = replaceFilename( fileQuery, file, fileUrl );
-                    webQuery = replaceFilename( webQuery, file, state.url + file );
+                    File absolutePath = new File( state.parentDirectory, state.knownFiles.get( i ) );
+                    parameters.put( FILE_PARAMETER + i, absolutePath.toURI().toString() );
                 }
-                if ( exec )
+            }
+            try ( CypherBatch batch = batchSize > 0 ? new CypherBatch( state, batchSize ) : null )
+            {
+                for ( String query : statements )
                 {
-                    if ( periodic )
+                    webQuery = query;
+                    fileQuery = query;
+                    for ( int i = 0; i < state.knownFiles.size(); i++ )
+                    {
+                        String file = state.knownFiles.get( i );
+                        if ( state.parameterizeFiles )
+                        {
+                            fileQuery = replaceFilenameWithParameter( fileQuery, file, FILE_PARAMETER + i );
+                        }
+                        else
+                        {
+                            File absolutePath = new File( state.parentDirectory, file );
+                            String fileUrl = absolutePath.toURI().toString();
+                            fileQuery = replaceFilename( fileQuery, file, fileUrl );
+                        }
+                        webQuery = replaceFilename( webQuery, file, state.url + file );
+                    }
+                    if ( !exec )
+                    {
+                        prettifiedStatements.add( webQuery );
+                    }
+                    else if ( batch != null )
                     {
-                        String originalQuery = fileQuery;
-                        state.graphOps.executeTransactionally( "PROFILE " + fileQuery, state.parameters,
-                                result -> state.latestResult = new Result( originalQuery, result) );
+                        state.latestResult = batch.execute( fileQuery, parameters );
                         prettifiedStatements.add( state.prettify( webQuery ) );
                     }
                     else
                     {
-                        try ( Transaction tx = state.graphOps.beginTx() )
+                        if ( periodic )
                         {
-                            state.latestResult = new Result( fileQuery, tx.execute( "PROFILE " + fileQuery, state.parameters ) );
+                            String originalQuery = fileQuery;
+                            state.graphOps.executeTransactionally( "PROFILE " + fileQuery, parameters,
+                                    result -> state.latestResult = new Result( originalQuery, result) );
                             prettifiedStatements.add( state.prettify( webQuery ) );
-                            tx.commit();
                         }
-                    }
-                    try ( Transaction tx = state.graphOps.beginTx() )
-                    {
-                        tx.schema().awaitIndexesOnline( 10000, TimeUnit.SECONDS );
+                        else
+                        {
+                            try ( Transaction tx = state.graphOps.beginTx() )
+                            {
+                                state.latestResult = new Result( fileQuery, tx.execute( "PROFILE " + fileQuery, parameters ) );
+                                prettifiedStatements.add( state.prettify( webQuery ) );
+                                tx.commit();
+                            }
+                        }
+                        if ( state.latestResult.schemaChanged )
+                        {
+                            state.awaitIndexesOnline();
+                        }
                     }
                 }
-                else
+                if ( batch != null )
                 {
-                    prettifiedStatements.add( webQuery );
+                    batch.commit();
                 }
             }
 
             state.parameters.clear();
             String cypher = StringUtils.join( prettifiedStatements, CypherDoc.EOL );
 
-            String customSubstitutionsRegex = "(pre)?subs(titutions)?[\"\\s]?=(?<subs>[^\\s\\]]+)";
-            Matcher customSubstitutionsMatcher = Pattern.compile(customSubstitutionsRegex).matcher(firstLine);
+            Matcher customSubstitutionsMatcher = CUSTOM_SUBSTITUTIONS.matcher( firstLine );
             if (customSubstitutionsMatcher.find()) {
                 return AsciidocHelper.createCypherSnippetFromPreformattedQueryWithCustomSubstitutions(cypher, exec, customSubstitutionsMatcher.group("subs")) + CypherDoc.EOL + CypherDoc.EOL;
             } else {
@@ -344,20 +289,14 @@ enum BlockType
     },
     SQL
     {
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isCodeBlock( "sql", block );
-        }
-
         @Override
         String process( Block block, State state )
         {
             List<String> statements = getQueriesBlockContent( block );
             for ( String query : statements )
             {
-                String result = executeSql( query, state.sqlDatabase );
-                state.latestSqlResult = new Result( query, result );
+                SqlTableRenderer.Table table = executeSql( query, state );
+                state.latestSqlResult = new Result( query, table.text, table.shownText );
             }
             String printQuery = StringUtils.join( statements, CypherDoc.EOL );
             return AsciidocHelper.createSqlSnippet( printQuery ) + CypherDoc.EOL + CypherDoc.EOL;
@@ -365,12 +304,6 @@ enum BlockType
     },
     GRAPH_RESULT
     {
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isACommentWith( block, "graph_result" );
-        }
-
         @Override
         String process( Block block, State state )
         {
@@ -379,12 +312,6 @@ enum BlockType
     },
     GRAPH
     {
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isACommentWith( block, "graph" );
-        }
-
         @Override
         String process( Block block, State state )
         {
@@ -393,12 +320,6 @@ enum BlockType
     },
     CONSOLE
     {
-        @Override
-        boolean isA( List<String> block )
-        {
-            return isACommentWith( block, "console" );
-        }
-
         @Override
         String process( Block block, State state )
         {
@@ -407,12 +328,6 @@ enum BlockType
     },
     FILE
             {
-                @Override
-                boolean isA( List<String> block )
-                {
-                    return isACommentWith( block, "file:" );
-                }
-
                 @Override
                 String process( Block block, State state )
                 {
@@ -426,12 +341,6 @@ enum BlockType
             },
     TEXT
     {
-        @Override
-        boolean isA( List<String> block )
-        {
-            return true;
-        }
-
         @Override
         String process( Block block, State state )
         {
@@ -440,14 +349,13 @@ enum BlockType
     };
 
     private static final String CODE_BLOCK = "----";
-    private static final int COLUMN_MAX_WIDTH = 25;
-    private static final String LINE_SEGMENT = new String( new char[COLUMN_MAX_WIDTH] ).replace( '\0', '-' );
-    private static final String SPACE_SEGMENT = new String( new char[COLUMN_MAX_WIDTH] ).replace( '\0', ' ' );
+    private static final Pattern CUSTOM_SUBSTITUTIONS = Pattern.compile( "(pre)?subs(titutions)?[\"\\s]?=(?<subs>[^\\s\\]]+)" );
+    private static final String FILE_PARAMETER = "cypherdocFile";
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final Pattern BATCH_ATTRIBUTE = Pattern.compile( "\\bbatch(=(?<size>\\d+))?\\b" );
     private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
     private static final ObjectWriter JSON_WRITER = JSON_MAPPER.writerWithDefaultPrettyPrinter();
 
-    abstract boolean isA( List<String> block );
-
     abstract String process( Block block, State state );
 
     private static String writeGraph( Block block, State state, boolean resultOnly )
@@ -468,16 +376,17 @@ enum BlockType
         }
         GraphvizWriter writer = new GraphvizWriter(
                 AsciiDocSimpleStyle.withAutomaticRelationshipTypeColors() );
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream( 4096 );
+        DigestOutputStream dot = GraphImages.digesting( out );
         try ( Transaction tx = state.graphOps.beginTx() )
         {
             if ( resultOnly )
             {
-                writer.emit( out, ResultWalker.result( tx, state ) );
+                writer.emit( dot, ResultWalker.result( tx, state ) );
             }
             else
             {
-                writer.emit( out, Walker.fullGraph( tx ) );
+                writer.emit( dot, Walker.fullGraph( tx ) );
             }
             tx.commit();
         }
@@ -485,58 +394,28 @@ enum BlockType
         {
             e.printStackTrace();
         }
-        StringBuilder output = new StringBuilder( 512 );
-        try
-        {
-            String dot = out.toString( StandardCharsets.UTF_8.name() );
-            output.append( "[\"dot\", \"cypherdoc-" )
-                    .append( id )
-                    .append( '-' )
-                    .append( Integer.toHexString( dot.hashCode() ) )
-                    .append( ".svg\", \"neoviz\"]\n----\n" )
-                    .append( dot )
-                    .append( "----\n" );
-        }
-        catch ( UnsupportedEncodingException e )
+        String fileName = state.graphImages.fileName( id, dot );
+        if ( !state.renderedGraphs.add( fileName ) )
         {
-            e.printStackTrace();
+            return "image::" + fileName + "[]\n";
         }
+        StringBuilder output = new StringBuilder( out.size() + fileName.length() + 40 );
+        output.append( "[\"dot\", \"" )
+                .append( fileName )
+                .append( "\", \"neoviz\"]\n----\n" )
+                .append( out.toString( StandardCharsets.UTF_8 ) )
+                .append( "----\n" );
         return output.toString();
     }
 
-    private static boolean isABlockOfType( List<String> block, String type )
+    private static int batchSize( String firstLine )
     {
-        if ( block.size() >= 3 )
+        Matcher matcher = BATCH_ATTRIBUTE.matcher( firstLine );
+        if ( !matcher.find() )
         {
-            String first = block.get( 0 );
-            return first.startsWith("[" + type + "]");
+            return 0;
         }
-        return false;
-    }
-
-    private static boolean isACommentWith( List<String> block, String command )
-    {
-        String first = block.get( 0 );
-        return first.startsWith( "//" + command ) || first.startsWith( "// " + command );
-    }
-
-    private static boolean isCodeBlock( String language, List<String> block )
-    {
-        String first = block.get( 0 );
-        if ( first.charAt( 0 ) != '[' )
-        {
-            return false;
-        }
-        if ( first.contains( "source" ) && first.contains( language ) )
-        {
-            return true;
-        }
-        if ( block.size() > 4 && first.startsWith( "[[" ) )
-        {
-            String second = block.get( 1 );
-            return second.contains("source") && second.contains(language);
-        }
-        return false;
+        return matcher.group( "size" ) == null ? DEFAULT_BATCH_SIZE : Integer.parseInt( matcher.group( "size" ) );
     }
 
     private static List<String> getQueriesBlockContent( Block block )
@@ -606,56 +485,16 @@ enum BlockType
         return StringUtils.join( lines, separator );
     }
 
-    private static String executeSql( String sql, Connection sqldb )
+    private static SqlTableRenderer.Table executeSql( String sql, State state )
     {
-        StringBuilder builder = new StringBuilder( 512 );
-        try (Statement statement = sqldb.createStatement())
+        try
         {
-            if ( statement.execute( sql ) )
-            {
-                try (ResultSet result = statement.getResultSet())
-                {
-                    ResultSetMetaData meta = result.getMetaData();
-                    int rowCount = 0;
-                    int columnCount = meta.getColumnCount();
-                    String line = new String( new char[columnCount] ).replace( "\0", "+" + LINE_SEGMENT ) + "+\n";
-                    builder.append( line );
-
-                    for ( int i = 1; i <= columnCount; i++ )
-                    {
-                        String output = meta.getColumnLabel( i );
-                        printColumn( builder, output );
-                    }
-                    builder.append( "|\n" ).append( line );
-                    while ( result.next() )
-                    {
-                        rowCount++;
-                        for ( int i = 1; i <= columnCount; i++ )
-                        {
-                            String output = result.getString( i );
-                            printColumn( builder, output );
-                        }
-                        builder.append( "|\n" );
-                    }
-
-                    builder.append( line ).append( rowCount ).append( " rows\n" );
-                }
-            }
+            return state.sqlTableRenderer.execute( state.prepareSql( sql ) );
         }
         catch ( SQLException sqlException )
         {
             throw new RuntimeException( sqlException );
         }
-        return builder.toString();
-    }
-
-    private static void printColumn( StringBuilder builder, String value )
-    {
-        if ( value == null )
-        {
-            value = "<null>";
-        }
-        builder.append( "| " ).append( value ).append( SPACE_SEGMENT.substring( value.length() + 1 ) );
     }
 
     private static String replaceFilename( String query, String filename, String replacement )
@@ -663,4 +502,10 @@ enum BlockType
         return query.replace( "'" + filename + "'", "'" + replacement + "'" )
                     .replace( '"' + filename + '"', '"' + replacement + '"' );
     }
+
+    private static String replaceFilenameWithParameter( String query, String filename, String parameter )
+    {
+        return query.replace( "'" + filename + "'", "$" + parameter )
+                    .replace( '"' + filename + '"', "$" + parameter );
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.doc.cypherdoc;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Executes consecutive statements of a CYPHER block in shared transactions,
+ * committing every {@code batchSize} statements. Each statement still gets
+ * its own {@link Result}, and a failing statement is reported with its
+ * position in the block. Neo4j doesn't mix schema and data changes in one
+ * transaction, so a statement that creates or drops an index or constraint
+ * runs in a transaction of its own.
+ */
+final class CypherBatch implements AutoCloseable
+{
+    private static final Pattern SCHEMA_STATEMENT =
+            Pattern.compile( "^\\s*(CREATE|DROP)\\s+(INDEX|CONSTRAINT)\\b", Pattern.CASE_INSENSITIVE );
+
+    private final State state;
+    private final int batchSize;
+    private Transaction tx;
+    private int statementsInTx;
+    private int statementNumber;
+
+    CypherBatch( State state, int batchSize )
+    {
+        if ( batchSize < 1 )
+        {
+            throw new IllegalArgumentException( "Batch size must be positive, was " + batchSize );
+        }
+        this.state = state;
+        this.batchSize = batchSize;
+    }
+
+    Result execute( String query, Map<String,Object> parameters )
+    {
+        statementNumber++;
+        boolean schemaStatement = SCHEMA_STATEMENT.matcher( query ).find();
+        if ( schemaStatement )
+        {
+            commit();
+        }
+        if ( tx == null )
+        {
+            tx = state.graphOps.beginTx();
+        }
+        Result result;
+        try
+        {
+            result = new Result( query, tx.execute( "PROFILE " + query, parameters ) );
+        }
+        catch ( RuntimeException e )
+        {
+            rollback();
+            throw new RuntimeException( String.format( "Statement %d of the batch failed, "
+                    + "statements since the last commit were rolled back:%s%s",
+                    statementNumber, CypherDoc.EOL, query ), e );
+        }
+        statementsInTx++;
+        if ( schemaStatement || result.schemaChanged || statementsInTx == batchSize )
+        {
+            commit();
+            if ( result.schemaChanged )
+            {
+                state.awaitIndexesOnline();
+            }
+        }
+        return result;
+    }
+
+    void commit()
+    {
+        if ( tx != null )
+        {
+            try
+            {
+                tx.commit();
+            }
+            catch ( RuntimeException e )
+            {
+                throw new RuntimeException( String.format( "Statements %d to %d of the batch failed to commit "
+                        + "and were rolled back", statementNumber - statementsInTx + 1, statementNumber ), e );
+            }
+            finally
+            {
+                tx.close();
+                tx = null;
+                statementsInTx = 0;
+            }
+        }
+    }
+
+    private void rollback()
+    {
+        if ( tx != null )
+        {
+            tx.close();
+            tx = null;
+            statementsInTx = 0;
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        rollback();
+    }
+}
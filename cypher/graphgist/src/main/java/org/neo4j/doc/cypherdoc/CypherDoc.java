@@ -21,8 +21,9 @@ package org.neo4j.doc.cypherdoc;
 
 import org.zeroturnaround.zip.ZipUtil;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -31,12 +32,9 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
-import org.neo4j.configuration.GraphDatabaseSettings;
-import org.neo4j.dbms.api.DatabaseManagementService;
-import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
 import org.neo4j.graphdb.GraphDatabaseService;
-
-import static org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAME;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.monitoring.Monitors;
 
 /**
  * Parse AsciiDoc-like content for use in Cypher documentation.
@@ -59,31 +57,67 @@ import static org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAM
 public final class CypherDoc
 {
     static final String EOL = System.lineSeparator();
+    /**
+     * Pass file URLs to queries as parameters rather than literals, so statements
+     * that only differ in the files they read share one cached plan.
+     */
+    static final boolean PARAMETERIZE_FILES = Boolean.getBoolean( "cypherdoc.parameterizeFiles" );
+    /**
+     * How many rows of a SQL result to fetch at a time, and how many of them to
+     * show in the document. Query tests always see every row.
+     */
+    static final int SQL_FETCH_SIZE = Integer.getInteger( "cypherdoc.sqlFetchSize", SqlTableRenderer.DEFAULT_FETCH_SIZE );
+    static final int SQL_ROW_LIMIT = Integer.getInteger( "cypherdoc.sqlRowLimit", SqlTableRenderer.DEFAULT_ROW_LIMIT );
 
     private CypherDoc()
     {
     }
 
     /**
-     * Parse a string as CypherDoc-enhanced AsciiDoc.
+     * Parse a string as CypherDoc-enhanced AsciiDoc. The store snapshots of a
+     * failing document are deleted, as they can't be dumped from outside this package.
      */
     public static String parse( String input, File parentDirectory, String url )
+    {
+        try
+        {
+            return parse( input, parentDirectory, url, new GraphImages(), new PlanCacheStatistics(), DatabasePool.onDemand() );
+        }
+        catch ( TestFailureException failure )
+        {
+            failure.deleteSnapshots();
+            throw failure;
+        }
+    }
+
+    /**
+     * Parse a string as CypherDoc-enhanced AsciiDoc, sharing graph image names
+     * with other documents parsed using the same {@link GraphImages}, and
+     * counting the query cache hits and misses of the document in
+     * {@code planCache}. The document gets a fresh database from
+     * {@code databases}.
+     */
+    static String parse( String input, File parentDirectory, String url, GraphImages graphImages,
+            PlanCacheStatistics planCache, DatabasePool databases )
     {
         List<Block> blocks = parseBlocks( input );
 
-        //TODO remove config when compiled plans are feature complete
-        File directory = new File( "target/example-db" + System.nanoTime() );
-        DatabaseManagementService managementService = new DatabaseManagementServiceBuilder( directory )
-                .setConfig( GraphDatabaseSettings.cypher_runtime, GraphDatabaseSettings.CypherRuntime.INTERPRETED )
-                .build();
-        GraphDatabaseService graphOps = managementService.database( DEFAULT_DATABASE_NAME );
+        DatabasePool.Database database = databases.take();
+        File directory = database.directory;
+        GraphDatabaseService graphOps = database.graphOps;
+        Monitors monitors = ((GraphDatabaseAPI) graphOps).getDependencyResolver().resolveDependency( Monitors.class );
+        monitors.addMonitorListener( planCache );
         Connection conn = null;
         TestFailureException failure = null;
         try
         {
             conn = DriverManager.getConnection( "jdbc:hsqldb:mem:graphgist;shutdown=true" );
             conn.setAutoCommit( true );
-            return executeBlocks( blocks, new State( graphOps, conn, parentDirectory, url ) );
+            SqlTableRenderer sqlTableRenderer = new SqlTableRenderer( SQL_FETCH_SIZE, SQL_ROW_LIMIT );
+            try ( State state = new State( graphOps, conn, parentDirectory, url, graphImages, sqlTableRenderer ) )
+            {
+                return executeBlocks( blocks, state );
+            }
         }
         catch ( TestFailureException exception )
         {
@@ -97,11 +131,13 @@ public final class CypherDoc
         }
         finally
         {
-            managementService.shutdown();
+            monitors.removeMonitorListener( planCache );
+            database.shutdown();
             if ( failure != null )
             {
                 dumpStoreFiles( directory, failure, "after-shutdown" );
             }
+            database.delete();
             if ( conn != null )
             {
                 try
@@ -181,22 +217,36 @@ public final class CypherDoc
 
     private static void dumpStoreFiles( File directory, TestFailureException exception, String when )
     {
-        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        // snapshots are spilled straight to disk, a failing run shouldn't also hold the store on the heap,
+        // and the exception moves or deletes the spill files once the failure is reported
+        File spill = null;
         try
         {
-            dumpZip( directory, snapshot );
-            exception.addSnapshot( when + ".zip", snapshot.toByteArray() );
+            spill = File.createTempFile( "cypherdoc-" + when + "-", ".zip" );
+            ZipUtil.pack( directory, spill );
+            exception.addSnapshot( when + ".zip", spill );
         }
         catch ( Exception e )
         {
-            snapshot.reset();
-            e.printStackTrace( new PrintStream( snapshot ) );
-            exception.addSnapshot( "dump-exception-" + when + ".txt", snapshot.toByteArray() );
+            if ( spill != null )
+            {
+                // a partly written zip is of no use
+                spill.delete();
+            }
+            try
+            {
+                File trace = File.createTempFile( "cypherdoc-" + when + "-", ".txt" );
+                exception.addSnapshot( "dump-exception-" + when + ".txt", trace );
+                try ( PrintStream out = new PrintStream( new FileOutputStream( trace ) ) )
+                {
+                    e.printStackTrace( out );
+                }
+            }
+            catch ( IOException ioe )
+            {
+                e.addSuppressed( ioe );
+                e.printStackTrace();
+            }
         }
     }
-
-    private static void dumpZip( File directory, ByteArrayOutputStream snapshot )
-    {
-        ZipUtil.pack( directory, snapshot );
-    }
 }
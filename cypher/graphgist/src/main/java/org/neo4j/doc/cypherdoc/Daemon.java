@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.doc.cypherdoc;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the sources given to {@link Main} and transforms the documents that
+ * change, into the same destination they were first written to. Runs until the
+ * process is stopped.
+ */
+final class Daemon
+{
+    /**
+     * Editors tend to produce several events per save, wait this long for the rest of them.
+     */
+    private static final long SETTLE_MILLIS = 100;
+
+    private final List<Path> sources = new ArrayList<>();
+    private final Path destinationDir;
+    private final String destinationUrl;
+    private final DatabasePool databases;
+    private final Map<WatchKey,Path> watchedDirectories = new HashMap<>();
+
+    Daemon( List<Path> sources, Path destinationDir, String destinationUrl, DatabasePool databases )
+    {
+        for ( Path source : sources )
+        {
+            this.sources.add( source.toAbsolutePath().normalize() );
+        }
+        this.destinationDir = destinationDir;
+        this.destinationUrl = destinationUrl;
+        this.databases = databases;
+    }
+
+    void run() throws IOException, InterruptedException
+    {
+        try ( WatchService watchService = watch() )
+        {
+            System.out.println( "Watching " + sources + " for changes." );
+            while ( true )
+            {
+                for ( Path file : awaitChanges( watchService ) )
+                {
+                    execute( file );
+                }
+            }
+        }
+    }
+
+    WatchService watch() throws IOException
+    {
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        for ( Path source : sources )
+        {
+            if ( Files.isDirectory( source ) )
+            {
+                registerTree( watchService, source );
+            }
+            else
+            {
+                register( watchService, source.getParent() );
+            }
+        }
+        return watchService;
+    }
+
+    /**
+     * Blocks until a document changes, and returns it along with the other documents that change before things settle.
+     */
+    Set<Path> awaitChanges( WatchService watchService ) throws IOException, InterruptedException
+    {
+        WatchKey key = watchService.take();
+        Set<Path> changed = new LinkedHashSet<>();
+        do
+        {
+            collectChanges( watchService, key, changed );
+            key = watchService.poll( SETTLE_MILLIS, TimeUnit.MILLISECONDS );
+        }
+        while ( key != null );
+        return changed;
+    }
+
+    private void collectChanges( WatchService watchService, WatchKey key, Set<Path> changed ) throws IOException
+    {
+        Path directory = watchedDirectories.get( key );
+        for ( WatchEvent<?> event : key.pollEvents() )
+        {
+            if ( event.kind() == OVERFLOW || directory == null )
+            {
+                continue;
+            }
+            Path child = directory.resolve( (Path) event.context() );
+            if ( event.kind() == ENTRY_CREATE && Files.isDirectory( child ) )
+            {
+                registerTree( watchService, child );
+            }
+            else if ( Files.isRegularFile( child ) && Main.fileFilter.accept( child.toFile() ) )
+            {
+                changed.add( child );
+            }
+        }
+        if ( !key.reset() )
+        {
+            watchedDirectories.remove( key );
+        }
+    }
+
+    void execute( Path file )
+    {
+        for ( Path source : sources )
+        {
+            if ( file.equals( source ) )
+            {
+                execute( file, destinationDir, destinationUrl );
+                return;
+            }
+            if ( file.startsWith( source ) && !file.equals( source ) && Files.isDirectory( source ) )
+            {
+                // mirrors Main.executeDirectory: nested directories are appended to the destination
+                Path destination = destinationDir;
+                StringBuilder url = new StringBuilder( destinationUrl );
+                for ( Path name : source.relativize( file.getParent() ) )
+                {
+                    if ( !name.toString().isEmpty() )
+                    {
+                        destination = destination.resolve( name.toString() );
+                        url.append( '/' ).append( name );
+                    }
+                }
+                execute( file, destination, url.toString() );
+                return;
+            }
+        }
+    }
+
+    private void execute( Path file, Path destination, String url )
+    {
+        long start = System.nanoTime();
+        try
+        {
+            // image names are only shared within one transform, so they don't pile up while watching
+            PlanCacheStatistics planCache = Main.executeFile( file, destination, url, new GraphImages(), databases );
+            long millis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+            if ( CypherDoc.PARAMETERIZE_FILES )
+            {
+                System.out.println( String.format( "Transformed %s in %d ms, %s.", file, millis, planCache ) );
+            }
+            else
+            {
+                System.out.println( String.format( "Transformed %s in %d ms.", file, millis ) );
+            }
+        }
+        catch ( Throwable e )
+        {
+            System.err.println( String.format( "Failed while executing file: %s", file ) );
+            e.printStackTrace();
+        }
+    }
+
+    private void registerTree( WatchService watchService, Path root ) throws IOException
+    {
+        Files.walkFileTree( root, new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult preVisitDirectory( Path directory, BasicFileAttributes attributes ) throws IOException
+            {
+                register( watchService, directory );
+                return FileVisitResult.CONTINUE;
+            }
+        } );
+    }
+
+    private void register( WatchService watchService, Path directory ) throws IOException
+    {
+        WatchKey key = directory.register( watchService, ENTRY_CREATE, ENTRY_MODIFY );
+        watchedDirectories.put( key, directory );
+    }
+}
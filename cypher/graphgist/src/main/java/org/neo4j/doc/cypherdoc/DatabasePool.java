@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.doc.cypherdoc;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.io.fs.FileUtils;
+
+import static org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAME;
+
+/**
+ * Hands out empty databases for CypherDoc documents. Every document still gets a
+ * database of its own, but a pool with warm instances starts the next databases in
+ * the background, so a document doesn't have to wait for one to start.
+ */
+final class DatabasePool implements AutoCloseable
+{
+    private final int warm;
+    private final Queue<Future<Database>> starting = new ArrayDeque<>();
+    private final ExecutorService starter;
+
+    /**
+     * @param warm the number of databases to keep started ahead of time, {@code 0} starts them on demand.
+     */
+    DatabasePool( int warm )
+    {
+        this.warm = warm;
+        this.starter = warm > 0 ? Executors.newSingleThreadExecutor() : null;
+        for ( int i = 0; i < warm; i++ )
+        {
+            starting.add( starter.submit( DatabasePool::start ) );
+        }
+    }
+
+    static DatabasePool onDemand()
+    {
+        return new DatabasePool( 0 );
+    }
+
+    synchronized Database take()
+    {
+        if ( warm == 0 )
+        {
+            return start();
+        }
+        Future<Database> next = starting.remove();
+        starting.add( starter.submit( DatabasePool::start ) );
+        try
+        {
+            return next.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException( e );
+        }
+        catch ( ExecutionException e )
+        {
+            throw new RuntimeException( e.getCause() );
+        }
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        if ( starter == null )
+        {
+            return;
+        }
+        starter.shutdown();
+        for ( Future<Database> database : starting )
+        {
+            try
+            {
+                Database started = database.get();
+                started.shutdown();
+                started.delete();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch ( ExecutionException e )
+            {
+                e.getCause().printStackTrace();
+            }
+        }
+        starting.clear();
+    }
+
+    private static Database start()
+    {
+        //TODO remove config when compiled plans are feature complete
+        File directory = new File( "target/example-db" + System.nanoTime() );
+        DatabaseManagementService managementService = new DatabaseManagementServiceBuilder( directory )
+                .setConfig( GraphDatabaseSettings.cypher_runtime, GraphDatabaseSettings.CypherRuntime.INTERPRETED )
+                .build();
+        return new Database( directory, managementService );
+    }
+
+    static final class Database
+    {
+        final File directory;
+        final GraphDatabaseService graphOps;
+        private final DatabaseManagementService managementService;
+
+        private Database( File directory, DatabaseManagementService managementService )
+        {
+            this.directory = directory;
+            this.managementService = managementService;
+            this.graphOps = managementService.database( DEFAULT_DATABASE_NAME );
+        }
+
+        void shutdown()
+        {
+            managementService.shutdown();
+        }
+
+        /**
+         * Removes the store of a database that has been shut down. It is kept until then, so that the store files of a
+         * failing document can be dumped after shutdown.
+         */
+        void delete()
+        {
+            try
+            {
+                FileUtils.deleteRecursively( directory );
+            }
+            catch ( IOException e )
+            {
+                System.err.println( "Could not delete " + directory + ": " + e.getMessage() );
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.doc.cypherdoc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Finds which of a set of fragments occur in a text, scanning the text once
+ * (Aho-Corasick). For fragments that don't occur, the line holding the longest
+ * prefix of the fragment that does occur is reported as the closest match.
+ */
+final class FragmentMatcher
+{
+    private static final int ROOT = 0;
+
+    private final List<String> fragments;
+    private final List<Map<Character,Integer>> next = new ArrayList<>();
+    private final List<Integer> fail = new ArrayList<>();
+    private final int[] terminals;
+
+    FragmentMatcher( List<String> fragments )
+    {
+        this.fragments = fragments;
+        this.terminals = new int[fragments.size()];
+        newNode();
+        for ( int i = 0; i < fragments.size(); i++ )
+        {
+            terminals[i] = insert( fragments.get( i ) );
+        }
+        linkFailures();
+    }
+
+    /**
+     * @return the fragments missing from the text, in the order given, each mapped to
+     * its closest match or {@code null} if not even its first character occurs.
+     */
+    Map<String,String> missing( String text )
+    {
+        int nodes = next.size();
+        boolean[] seen = new boolean[nodes];
+        int[] seenAt = new int[nodes];
+        seen[ROOT] = true;
+        int state = ROOT;
+        for ( int i = 0; i < text.length(); i++ )
+        {
+            char c = text.charAt( i );
+            Integer target = next.get( state ).get( c );
+            while ( target == null && state != ROOT )
+            {
+                state = fail.get( state );
+                target = next.get( state ).get( c );
+            }
+            state = target == null ? ROOT : target;
+            // a seen node always has its whole failure chain seen, so each node is walked once
+            for ( int s = state; !seen[s]; s = fail.get( s ) )
+            {
+                seen[s] = true;
+                seenAt[s] = i;
+            }
+        }
+
+        Map<String,String> missing = new LinkedHashMap<>();
+        for ( int i = 0; i < fragments.size(); i++ )
+        {
+            String fragment = fragments.get( i );
+            if ( !seen[terminals[i]] && !missing.containsKey( fragment ) )
+            {
+                missing.put( fragment, closestMatch( fragment, text, seen, seenAt ) );
+            }
+        }
+        return missing;
+    }
+
+    private String closestMatch( String fragment, String text, boolean[] seen, int[] seenAt )
+    {
+        int deepest = ROOT;
+        int node = ROOT;
+        for ( int i = 0; i < fragment.length(); i++ )
+        {
+            node = next.get( node ).get( fragment.charAt( i ) );
+            if ( seen[node] )
+            {
+                deepest = node;
+            }
+        }
+        if ( deepest == ROOT )
+        {
+            return null;
+        }
+        int end = seenAt[deepest];
+        int lineStart = text.lastIndexOf( '\n', end ) + 1;
+        int lineEnd = text.indexOf( '\n', end );
+        return text.substring( lineStart, lineEnd == -1 ? text.length() : lineEnd ).trim();
+    }
+
+    private int newNode()
+    {
+        next.add( new HashMap<>() );
+        fail.add( ROOT );
+        return next.size() - 1;
+    }
+
+    private int insert( String fragment )
+    {
+        int node = ROOT;
+        for ( int i = 0; i < fragment.length(); i++ )
+        {
+            char c = fragment.charAt( i );
+            Integer child = next.get( node ).get( c );
+            if ( child == null )
+            {
+                child = newNode();
+                next.get( node ).put( c, child );
+            }
+            node = child;
+        }
+        return node;
+    }
+
+    private void linkFailures()
+    {
+        Queue<Integer> queue = new ArrayDeque<>( next.get( ROOT ).values() );
+        while ( !queue.isEmpty() )
+        {
+            int node = queue.remove();
+            for ( Map.Entry<Character,Integer> edge : next.get( node ).entrySet() )
+            {
+                char c = edge.getKey();
+                int child = edge.getValue();
+                int candidate = fail.get( node );
+                Integer target = next.get( candidate ).get( c );
+                while ( target == null && candidate != ROOT )
+                {
+                    candidate = fail.get( candidate );
+                    target = next.get( candidate ).get( c );
+                }
+                fail.set( child, target == null ? ROOT : target );
+                queue.add( child );
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.doc.cypherdoc;
+
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Names graph images after a digest of their DOT source. The first graph with a
+ * given digest decides the file name; identical graphs rendered later, in the same
+ * or another document sharing this instance, get that same file name. Within a
+ * document, only the first of them writes out the DOT source, later ones refer to
+ * its image. An instance is meant to live for one run over a set of documents.
+ */
+final class GraphImages
+{
+    private static final int DIGEST_BYTES = 8;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Map<String,String> fileNames = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps the stream the DOT source is written to, so it gets digested on the way through.
+     */
+    static DigestOutputStream digesting( OutputStream out )
+    {
+        try
+        {
+            return new DigestOutputStream( out, MessageDigest.getInstance( "SHA-256" ) );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new IllegalStateException( "SHA-256 is required to be supported by every JVM", e );
+        }
+    }
+
+    String fileName( String id, DigestOutputStream dot )
+    {
+        String digest = hex( dot.getMessageDigest().digest() );
+        return fileNames.computeIfAbsent( digest, key -> "cypherdoc-" + id + '-' + key + ".svg" );
+    }
+
+    private static String hex( byte[] digest )
+    {
+        char[] chars = new char[DIGEST_BYTES * 2];
+        for ( int i = 0; i < DIGEST_BYTES; i++ )
+        {
+            chars[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String( chars );
+    }
+}
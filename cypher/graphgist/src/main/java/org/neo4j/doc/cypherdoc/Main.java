@@ -26,7 +26,9 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Parses AsciiDoc files with some special markup to produce Cypher tutorials.
@@ -34,7 +36,7 @@ import java.util.Arrays;
 public class Main
 {
     private static final String[] EXTENSIONS = new String[] { ".asciidoc", ".adoc" };
-    private static final FileFilter fileFilter = new FileFilter(){
+    static final FileFilter fileFilter = new FileFilter(){
         public boolean accept( File file ) {
             return Arrays.stream( EXTENSIONS ).anyMatch(ext -> file.getAbsolutePath().endsWith( ext ));
         }
@@ -45,29 +47,56 @@ public class Main
      * .asciidoc or .adoc files). The output file name is based on the input
      * file name (and the relative path if a directory got searched). The first
      * argument is the base destination directory.
+     * <p>
+     * With {@code --watch} as the first argument, the sources are transformed
+     * once and then watched, and changed files are transformed again until the
+     * process is stopped.
+     * <p>
+     * With {@code -Dcypherdoc.parameterizeFiles=true}, the query cache hits
+     * of the whole run are reported once all sources are transformed.
      *
-     * @param args base destination directory, followed by files/directories to parse.
+     * @param args optional --watch, base destination directory, public URL, followed by files/directories to parse.
      */
     public static void main( String[] args ) throws Exception
     {
+        boolean watch = args.length > 0 && args[0].equals( "--watch" );
+        if ( watch )
+        {
+            args = Arrays.copyOfRange( args, 1, args.length );
+        }
         if ( args.length >= 3 )
         {
 
             Path destinationDir = getDestinationDir( args[0] );
             String destinationUrl = args[1];
+            List<Path> sources = new ArrayList<>();
 
-            for ( int i = 2; i < args.length; i++ )
+            GraphImages graphImages = new GraphImages();
+            PlanCacheStatistics planCache = new PlanCacheStatistics();
+            try ( DatabasePool databases = watch ? new DatabasePool( 1 ) : DatabasePool.onDemand() )
             {
-                String name = args[i];
-                Path source = Paths.get( name );
+                for ( int i = 2; i < args.length; i++ )
+                {
+                    String name = args[i];
+                    Path source = Paths.get( name );
+                    sources.add( source );
 
-                if ( Files.isDirectory( source ) )
+                    if ( Files.isDirectory( source ) )
+                    {
+                        executeDirectory( source, destinationDir, destinationUrl, true, graphImages, databases, planCache );
+                    }
+                    else
+                    {
+                        planCache.add( executeFile( source, destinationDir, destinationUrl, graphImages, databases ) );
+                    }
+                }
+                if ( CypherDoc.PARAMETERIZE_FILES )
                 {
-                    executeDirectory( source, destinationDir, destinationUrl, true );
+                    System.out.println( String.format( "Transformed %s: %s.", sources, planCache ) );
                 }
-                else
+                if ( watch )
                 {
-                    executeFile( source, destinationDir, destinationUrl );
+                    new Daemon( sources, destinationDir, destinationUrl, databases ).run();
                 }
             }
         }
@@ -77,7 +106,8 @@ public class Main
         }
     }
 
-    private static void executeDirectory( Path sourceDir, Path destinationDir, String destinationUrl, boolean isTopLevelDir )
+    private static void executeDirectory( Path sourceDir, Path destinationDir, String destinationUrl, boolean isTopLevelDir,
+            GraphImages graphImages, DatabasePool databases, PlanCacheStatistics planCache )
     {
         String sourceDirName = sourceDir.getFileName().toString();
         Path nestedDestinationDir = isTopLevelDir ? destinationDir : destinationDir.resolve( sourceDirName );
@@ -94,13 +124,15 @@ public class Main
         {
             if ( fileInDir.isDirectory() )
             {
-                executeDirectory( fileInDir.toPath(), nestedDestinationDir, nestedDestinationUrl, false );
+                executeDirectory( fileInDir.toPath(), nestedDestinationDir, nestedDestinationUrl, false, graphImages, databases,
+                        planCache );
             }
             else
             {
                 try
                 {
-                    executeFile( fileInDir.toPath(), nestedDestinationDir, nestedDestinationUrl );
+                    planCache.add( executeFile( fileInDir.toPath(), nestedDestinationDir, nestedDestinationUrl, graphImages,
+                            databases ) );
                 }
                 catch ( Throwable e )
                 {
@@ -125,20 +157,26 @@ public class Main
     }
 
     /**
-     * Parse a single file.
+     * Parse a single file, returning the query cache hits and misses of its
+     * statements. Identical graphs share image names with the other files
+     * parsed using the same {@code graphImages}.
      */
-    private static void executeFile( Path sourceFile, Path destinationDir, String url ) throws Exception
+    static PlanCacheStatistics executeFile( Path sourceFile, Path destinationDir, String url, GraphImages graphImages,
+            DatabasePool databases ) throws Exception
     {
         try
         {
             String name = sourceFile.getFileName().toString();
             String delimiter = System.getProperty("os.name").toLowerCase().startsWith( "windows" ) ? "\r\n" : "\n";
             String input = String.join( delimiter, Files.readAllLines( sourceFile, StandardCharsets.UTF_8 ) );
-            String output = CypherDoc.parse( input, sourceFile.toFile().getParentFile(), url );
+            PlanCacheStatistics planCache = new PlanCacheStatistics();
+            String output = CypherDoc.parse( input, sourceFile.toFile().getParentFile(), url, graphImages, planCache,
+                    databases );
 
             Files.createDirectories( destinationDir );
             Path target = destinationDir.resolve( name );
             Files.write( target, output.getBytes() );
+            return planCache;
         }
         catch ( TestFailureException failure )
         {
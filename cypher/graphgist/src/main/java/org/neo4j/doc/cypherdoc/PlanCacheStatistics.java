@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.doc.cypherdoc;
+
+import org.neo4j.cypher.internal.StringCacheMonitor;
+import org.neo4j.internal.helpers.collection.Pair;
+
+/**
+ * Counts the hits and misses of the Cypher query cache while it is registered
+ * as a monitor listener on a database. Each document gets a fresh database,
+ * and with it an empty cache, so plans are only reused within one document.
+ */
+final class PlanCacheStatistics implements StringCacheMonitor
+{
+    private long hits;
+    private long misses;
+
+    @Override
+    public synchronized void cacheHit( Pair<String,scala.collection.immutable.Map<String,Class<?>>> key )
+    {
+        hits++;
+    }
+
+    @Override
+    public synchronized void cacheMiss( Pair<String,scala.collection.immutable.Map<String,Class<?>>> key )
+    {
+        misses++;
+    }
+
+    synchronized long hits()
+    {
+        return hits;
+    }
+
+    synchronized long misses()
+    {
+        return misses;
+    }
+
+    synchronized void add( PlanCacheStatistics other )
+    {
+        hits += other.hits();
+        misses += other.misses();
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        long lookups = hits + misses;
+        long hitRate = lookups == 0 ? 0 : 100 * hits / lookups;
+        return String.format( "%d plan cache hits, %d misses, %d%% hit rate", hits, misses, hitRate );
+    }
+}
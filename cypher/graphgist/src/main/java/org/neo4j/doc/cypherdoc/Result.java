@@ -19,23 +19,28 @@
  */
 package org.neo4j.doc.cypherdoc;
 
-import java.util.HashSet;
+import org.eclipse.collections.api.set.primitive.MutableLongSet;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import org.neo4j.cypher.internal.result.string.ResultStringBuilder;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.QueryStatistics;
 import org.neo4j.graphdb.Relationship;
 
 class Result
 {
     final String query;
     final String text;
+    final String shownText;
     final String profile;
-    final Set<Long> nodeIds = new HashSet<>();
-    final Set<Long> relationshipIds = new HashSet<>();
+    final boolean schemaChanged;
+    final MutableLongSet nodeIds = new LongHashSet();
+    final MutableLongSet relationshipIds = new LongHashSet();
 
     public Result( String query, org.neo4j.graphdb.Result result )
     {
@@ -44,7 +49,10 @@ class Result
         {
             ResultVisitor visitor = new ResultVisitor( result.columns() );
             result.accept( visitor );
-            text = visitor.resultStringBuilder.result( result.getQueryStatistics() );
+            QueryStatistics statistics = result.getQueryStatistics();
+            text = visitor.resultStringBuilder.result( statistics );
+            shownText = text;
+            schemaChanged = statistics.getIndexesAdded() > 0 || statistics.getConstraintsAdded() > 0;
         }
         catch ( Exception e )
         {
@@ -64,10 +72,21 @@ class Result
     }
 
     public Result( String query, String text )
+    {
+        this( query, text, text );
+    }
+
+    /**
+     * A result that only shows part of its text in the document, like a SQL table
+     * beyond its row limit. Query tests still match against the whole text.
+     */
+    public Result( String query, String text, String shownText )
     {
         this.query = query;
         this.text = text;
+        this.shownText = shownText;
         this.profile = "";
+        this.schemaChanged = false;
     }
 
     class ResultVisitor implements org.neo4j.graphdb.Result.ResultVisitor<Exception> {
@@ -125,6 +144,21 @@ class Result
             {
                 extractEntityIds( ((Iterable<?>) item).iterator() );
             }
+            else if ( item instanceof Object[] )
+            {
+                for ( Object element : (Object[]) item )
+                {
+                    extractEntityIds( element );
+                }
+            }
+        }
+
+        private void extractEntityIds( Iterator<?> items )
+        {
+            while ( items.hasNext() )
+            {
+                extractEntityIds( items.next() );
+            }
         }
     }
 }
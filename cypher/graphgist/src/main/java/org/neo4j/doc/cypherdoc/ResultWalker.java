@@ -19,8 +19,11 @@
  */
 package org.neo4j.doc.cypherdoc;
 
-import java.util.HashSet;
-import java.util.Set;
+import org.eclipse.collections.api.set.primitive.MutableLongSet;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
@@ -32,18 +35,20 @@ public class ResultWalker
 {
     public static Walker result( Transaction tx, State state )
     {
-        final Set<Node> nodes = new HashSet<>();
+        final MutableLongSet nodeIds = LongHashSet.newSet( state.latestResult.nodeIds );
 
-        for ( long nodeId : state.latestResult.nodeIds )
+        // resolve in id order, so neighbouring records are read together
+        for ( long relationshipId : state.latestResult.relationshipIds.toSortedArray() )
         {
-            nodes.add( tx.getNodeById( nodeId ) );
+            Relationship rel = tx.getRelationshipById( relationshipId );
+            nodeIds.add( rel.getStartNode().getId() );
+            nodeIds.add( rel.getEndNode().getId() );
         }
 
-        for ( long relationshipId : state.latestResult.relationshipIds )
+        final List<Node> nodes = new ArrayList<>( nodeIds.size() );
+        for ( long nodeId : nodeIds.toSortedArray() )
         {
-            Relationship rel = tx.getRelationshipById( relationshipId );
-            nodes.add( rel.getStartNode() );
-            nodes.add( rel.getEndNode() );
+            nodes.add( tx.getNodeById( nodeId ) );
         }
 
         return new Walker()
@@ -56,7 +61,7 @@ public class ResultWalker
                     visitor.visitNode( node );
                     for ( Relationship relationship : node.getRelationships() )
                     {
-                        if ( nodes.contains( relationship.getOtherNode( node ) ) )
+                        if ( nodeIds.contains( relationship.getOtherNode( node ).getId() ) )
                         {
                             visitor.visitRelationship( relationship );
                         }
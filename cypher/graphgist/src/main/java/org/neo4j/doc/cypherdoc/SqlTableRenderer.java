@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.doc.cypherdoc;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Renders SQL results as text tables, in the same layout as the Cypher result tables.
+ * Every row is rendered for the query tests to match against, but the table shown in
+ * the document stops after {@code rowLimit} rows and only counts the rest. Column
+ * widths are computed from all rows, so both tables line up the same way.
+ */
+final class SqlTableRenderer
+{
+    static final int DEFAULT_FETCH_SIZE = 100;
+    static final int DEFAULT_ROW_LIMIT = 1000;
+
+    private static final int COLUMN_MIN_WIDTH = 25;
+    private static final String NULL = "<null>";
+
+    private final int fetchSize;
+    private final int rowLimit;
+
+    SqlTableRenderer( int fetchSize, int rowLimit )
+    {
+        if ( fetchSize < 0 || rowLimit < 0 )
+        {
+            throw new IllegalArgumentException( "Fetch size and row limit can't be negative." );
+        }
+        this.fetchSize = fetchSize;
+        this.rowLimit = rowLimit;
+    }
+
+    /**
+     * Executes the statement and renders its result, if any.
+     *
+     * @return the rendered tables, which are empty for statements without a result set.
+     */
+    Table execute( PreparedStatement statement ) throws SQLException
+    {
+        statement.setFetchSize( fetchSize );
+        if ( !statement.execute() )
+        {
+            return new Table( "", "" );
+        }
+        try ( ResultSet result = statement.getResultSet() )
+        {
+            return render( result );
+        }
+    }
+
+    Table render( ResultSet result ) throws SQLException
+    {
+        ResultSetMetaData meta = result.getMetaData();
+        int columnCount = meta.getColumnCount();
+        int[] widths = new int[columnCount];
+        Arrays.fill( widths, COLUMN_MIN_WIDTH );
+
+        String[] header = new String[columnCount];
+        for ( int i = 0; i < columnCount; i++ )
+        {
+            header[i] = meta.getColumnLabel( i + 1 );
+            fitColumn( widths, i, header[i] );
+        }
+
+        List<String[]> rows = new ArrayList<>( fetchSize );
+        while ( result.next() )
+        {
+            String[] row = new String[columnCount];
+            for ( int i = 0; i < columnCount; i++ )
+            {
+                String value = result.getString( i + 1 );
+                row[i] = value == null ? NULL : value;
+                fitColumn( widths, i, row[i] );
+            }
+            rows.add( row );
+        }
+
+        String text = table( header, rows, widths );
+        if ( rows.size() <= rowLimit )
+        {
+            return new Table( text, text );
+        }
+        return new Table( text, table( header, rows.subList( 0, rowLimit ), widths, rows.size() ) );
+    }
+
+    private static String table( String[] header, List<String[]> rows, int[] widths )
+    {
+        return table( header, rows, widths, rows.size() );
+    }
+
+    private static String table( String[] header, List<String[]> rows, int[] widths, int rowCount )
+    {
+        int lineLength = widths.length + 2;
+        for ( int width : widths )
+        {
+            lineLength += width;
+        }
+        StringBuilder builder = new StringBuilder( lineLength * (rows.size() + 5) );
+        String line = separatorLine( widths );
+        builder.append( line );
+        appendRow( builder, header, widths );
+        builder.append( line );
+        for ( String[] row : rows )
+        {
+            appendRow( builder, row, widths );
+        }
+        builder.append( line );
+        if ( rowCount > rows.size() )
+        {
+            builder.append( rowCount - rows.size() ).append( " more rows not shown\n" );
+        }
+        builder.append( rowCount ).append( " rows\n" );
+        return builder.toString();
+    }
+
+    private static void fitColumn( int[] widths, int column, String value )
+    {
+        // one space of padding on each side of the value
+        widths[column] = Math.max( widths[column], value.length() + 2 );
+    }
+
+    private static String separatorLine( int[] widths )
+    {
+        StringBuilder line = new StringBuilder();
+        for ( int width : widths )
+        {
+            line.append( '+' );
+            repeat( line, '-', width );
+        }
+        return line.append( "+\n" ).toString();
+    }
+
+    private static void appendRow( StringBuilder builder, String[] values, int[] widths )
+    {
+        for ( int i = 0; i < values.length; i++ )
+        {
+            builder.append( "| " ).append( values[i] );
+            repeat( builder, ' ', widths[i] - values[i].length() - 1 );
+        }
+        builder.append( "|\n" );
+    }
+
+    private static void repeat( StringBuilder builder, char c, int times )
+    {
+        for ( int i = 0; i < times; i++ )
+        {
+            builder.append( c );
+        }
+    }
+
+    static final class Table
+    {
+        /**
+         * All rows, for the query tests.
+         */
+        final String text;
+        /**
+         * At most the row limit, for the document.
+         */
+        final String shownText;
+
+        Table( String text, String shownText )
+        {
+            this.text = text;
+            this.shownText = shownText;
+        }
+    }
+}
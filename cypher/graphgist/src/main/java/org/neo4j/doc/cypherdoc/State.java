@@ -21,22 +21,33 @@ package org.neo4j.doc.cypherdoc;
 
 import org.neo4j.cypher.docgen.tooling.Prettifier;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
 
 import java.io.File;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
-class State
+class State implements AutoCloseable
 {
     final GraphDatabaseService graphOps;
     final Connection sqlDatabase;
     final File parentDirectory;
     final String url;
+    final GraphImages graphImages;
+    final Set<String> renderedGraphs = new HashSet<>();
     final List<String> knownFiles = new ArrayList<>();
     final Map<String, Object> parameters = new HashMap<>();
+    private final Map<String, PreparedStatement> sqlStatements = new HashMap<>();
+    boolean parameterizeFiles = CypherDoc.PARAMETERIZE_FILES;
+    final SqlTableRenderer sqlTableRenderer;
 
     Result latestResult;
     Result testedResult;
@@ -47,15 +58,84 @@ class State
            Connection sqlConnection,
            File parentDirectory,
            String url )
+    {
+        this( graphOps, sqlConnection, parentDirectory, url, new GraphImages(),
+                new SqlTableRenderer( SqlTableRenderer.DEFAULT_FETCH_SIZE, SqlTableRenderer.DEFAULT_ROW_LIMIT ) );
+    }
+
+    State( GraphDatabaseService graphOps,
+           Connection sqlConnection,
+           File parentDirectory,
+           String url,
+           GraphImages graphImages,
+           SqlTableRenderer sqlTableRenderer )
     {
         this.graphOps = graphOps;
         this.sqlDatabase = sqlConnection;
         this.parentDirectory = parentDirectory;
         this.url = url.endsWith( "/" ) ? url : url + "/";
+        this.graphImages = graphImages;
+        this.sqlTableRenderer = sqlTableRenderer;
     }
 
     String prettify( String query )
     {
         return Prettifier.apply( query, false );
     }
+
+    /**
+     * Prepared statements are kept for the lifetime of the connection, so
+     * the same SQL in several blocks of a document is only compiled once.
+     */
+    PreparedStatement prepareSql( String sql ) throws SQLException
+    {
+        PreparedStatement statement = sqlStatements.get( sql );
+        if ( statement == null || statement.isClosed() )
+        {
+            statement = sqlDatabase.prepareStatement( sql );
+            sqlStatements.put( sql, statement );
+        }
+        return statement;
+    }
+
+    /**
+     * Closes the prepared statements, but not the connection, which belongs to
+     * whoever created this state.
+     */
+    @Override
+    public void close() throws SQLException
+    {
+        SQLException failure = null;
+        for ( PreparedStatement statement : sqlStatements.values() )
+        {
+            try
+            {
+                statement.close();
+            }
+            catch ( SQLException e )
+            {
+                if ( failure == null )
+                {
+                    failure = e;
+                }
+                else
+                {
+                    failure.addSuppressed( e );
+                }
+            }
+        }
+        sqlStatements.clear();
+        if ( failure != null )
+        {
+            throw failure;
+        }
+    }
+
+    void awaitIndexesOnline()
+    {
+        try ( Transaction tx = graphOps.beginTx() )
+        {
+            tx.schema().awaitIndexesOnline( 10000, TimeUnit.SECONDS );
+        }
+    }
 }
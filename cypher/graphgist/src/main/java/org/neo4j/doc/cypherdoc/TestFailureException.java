@@ -20,29 +20,39 @@
 package org.neo4j.doc.cypherdoc;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 class TestFailureException extends RuntimeException
 {
     final Result result;
     private List<Snapshot> snapshots = new ArrayList<>();
 
-    TestFailureException( Result result, List<String> failedTests )
+    /**
+     * @param failedTests the strings missing from the result, each mapped to the closest
+     * match found in the result, or {@code null} if there wasn't any.
+     */
+    TestFailureException( Result result, Map<String,String> failedTests )
     {
         super( message( failedTests ) );
         this.result = result;
     }
 
-    private static String message( List<String> failedTests )
+    private static String message( Map<String,String> failedTests )
     {
         StringBuilder message = new StringBuilder( "Query validation failed:" );
-        for ( String test : failedTests )
+        for ( Map.Entry<String,String> test : failedTests.entrySet() )
         {
             message.append( CypherDoc.EOL )
-                   .append( "\tQuery result doesn't contain the string '" ).append( test ).append( "'." );
+                   .append( "\tQuery result doesn't contain the string '" ).append( test.getKey() ).append( "'." );
+            if ( test.getValue() != null )
+            {
+                message.append( " Closest match: '" ).append( test.getValue() ).append( "'." );
+            }
         }
         return message.toString();
     }
@@ -71,11 +81,15 @@ class TestFailureException extends RuntimeException
         return message.toString();
     }
 
-    synchronized void addSnapshot( String key, byte[] bytes )
+    synchronized void addSnapshot( String key, File spillFile )
     {
-        snapshots.add( new InMemorySnapshot( key, bytes ) );
+        snapshots.add( new SpilledSnapshot( key, spillFile ) );
     }
 
+    /**
+     * Moves the spilled snapshots into {@code targetDir}. Spill files that can't
+     * be moved are deleted, so no snapshot is left behind in the temporary directory.
+     */
     synchronized void dumpSnapshots( File targetDir )
     {
         List<Snapshot> prior = snapshots;
@@ -86,6 +100,18 @@ class TestFailureException extends RuntimeException
         }
     }
 
+    /**
+     * Deletes the spilled snapshots, for callers that don't dump them.
+     */
+    synchronized void deleteSnapshots()
+    {
+        for ( Snapshot snapshot : snapshots )
+        {
+            snapshot.delete();
+        }
+        snapshots = new ArrayList<>();
+    }
+
     private abstract static class Snapshot
     {
         final String filename;
@@ -102,32 +128,66 @@ class TestFailureException extends RuntimeException
         }
 
         abstract Snapshot dump( File targetDir );
+
+        void delete()
+        {
+        }
     }
 
-    private static class InMemorySnapshot extends Snapshot
+    private static class SpilledSnapshot extends Snapshot
     {
-        private final byte[] bytes;
+        private final File spillFile;
 
-        InMemorySnapshot( String filename, byte[] bytes )
+        SpilledSnapshot( String filename, File spillFile )
         {
             super( filename );
-            this.bytes = bytes;
+            this.spillFile = spillFile;
         }
 
         @Override
         public Snapshot dump( File targetDir )
         {
             File target = new File( targetDir, filename );
-            try ( FileOutputStream output = new FileOutputStream( target ) )
+            try
             {
-                output.write( bytes );
+                Files.move( spillFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING );
                 return new DumpedSnapshot( target.getAbsolutePath() );
             }
             catch ( IOException e )
             {
-                return this;
+                delete();
+                return new LostSnapshot( filename, e );
             }
         }
+
+        @Override
+        void delete()
+        {
+            spillFile.delete();
+        }
+    }
+
+    private static class LostSnapshot extends Snapshot
+    {
+        private final IOException reason;
+
+        LostSnapshot( String filename, IOException reason )
+        {
+            super( filename );
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString()
+        {
+            return super.toString() + " could not be dumped: " + reason;
+        }
+
+        @Override
+        public Snapshot dump( File targetDir )
+        {
+            return this;
+        }
     }
 
     private static class DumpedSnapshot extends Snapshot
@@ -32,17 +32,20 @@ import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import org.neo4j.dbms.api.DatabaseManagementService;
 import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.schema.IndexDefinition;
 import org.neo4j.graphdb.schema.Schema;
 import org.neo4j.kernel.impl.factory.GraphDatabaseFacade;
 
@@ -89,6 +92,26 @@ public class BlockTypeTest
     private static final List<String> TWO_NODES_ONE_REL = Arrays.asList( "[source, cypher]", "----",
             "CREATE (n:Person {name:'Alice'})-[r:KNOWS {since: 1998}]->(m:Person {name:'Bob'})", "RETURN n,m,r",
             "----" );
+    private static final List<String> NESTED_ENTITIES = Arrays.asList( "[source, cypher]", "----",
+            "CREATE (n:Person {name:'Alice'})-[r:KNOWS]->(m:Person {name:'Bob'})",
+            "RETURN [n, m] AS people, {knows: r} AS rels;", "----" );
+    private static final List<String> CREATE_INDEX = Arrays.asList( "[source, cypher]", "----",
+            "CREATE INDEX ON :Person(name);", "----" );
+    private static final List<String> BATCHED_QUERIES = Arrays.asList( "[source, cypher, batch=2]", "----",
+            "CREATE (:Person {name:'Alice'});", "CREATE (:Person {name:'Bob'});", "CREATE (:Person {name:'Carol'});",
+            "MATCH (n:Person) RETURN count(n) AS people;", "----" );
+    private static final List<String> BATCHED_SCHEMA_CHANGE = Arrays.asList( "[source, cypher, batch=10]", "----",
+            "CREATE INDEX ON :Person(name);", "CREATE (:Person {name:'Alice'});",
+            "MATCH (n:Person {name:'Alice'}) RETURN n.name AS name;", "----" );
+    private static final List<String> BATCHED_DATA_THEN_SCHEMA_CHANGE = Arrays.asList( "[source, cypher, batch=10]", "----",
+            "CREATE (:Person {name:'Alice'});", "CREATE INDEX ON :Person(name);", "CREATE (:Person {name:'Bob'});",
+            "MATCH (n:Person) RETURN count(n) AS people;", "----" );
+    private static final List<String> FAILING_BATCH = Arrays.asList( "[source, cypher, batch]", "----",
+            "CREATE (:Person {name:'Alice'});", "CREATE RETURN n;", "----" );
+    private static final List<String> LONG_SQL_VALUE = Arrays.asList( "[source,sql]", "----",
+            "VALUES('a value that does not fit in the default column width')", "----" );
+    private static final List<String> MANY_SQL_ROWS = Arrays.asList( "[source,sql]", "----",
+            "VALUES(1), (2), (3), (4)", "----" );
     private DatabaseManagementService managementService;
     private File folder;
 
@@ -104,8 +127,9 @@ public class BlockTypeTest
     }
 
     @After
-    public void tearDown() throws IOException
+    public void tearDown() throws IOException, SQLException
     {
+        state.close();
         managementService.shutdown();
         FileUtils.deleteDirectory( folder );
     }
@@ -149,6 +173,20 @@ public class BlockTypeTest
         assertThat( output, containsString( "== Title here" ) );
     }
 
+    @Test
+    public void code_block_header_after_anchor()
+    {
+        Block block = Block.getBlock( Arrays.asList( "[[my-query]]", "[source, cypher]", "----", "RETURN 1;", "----" ) );
+        assertThat( block.type, sameInstance( BlockType.CYPHER ) );
+    }
+
+    @Test
+    public void json_without_parameters_role_is_text()
+    {
+        Block block = Block.getBlock( Arrays.asList( "[source, json]", "----", "{}", "----" ) );
+        assertThat( block.type, sameInstance( BlockType.TEXT ) );
+    }
+
     @Test
     public void queryWithResultAndTest()
     {
@@ -195,6 +233,164 @@ public class BlockTypeTest
         block.process( state );
     }
 
+    @Test
+    public void only_schema_changes_wait_for_indexes()
+    {
+        // when
+        Block.getBlock( ADAM_QUERY ).process( state );
+
+        // then
+        assertThat( state.latestResult.schemaChanged, equalTo( false ) );
+
+        // when
+        Block.getBlock( CREATE_INDEX ).process( state );
+
+        // then
+        assertThat( state.latestResult.schemaChanged, equalTo( true ) );
+        try ( Transaction tx = graphOps.beginTx() )
+        {
+            for ( IndexDefinition index : tx.schema().getIndexes() )
+            {
+                assertThat( tx.schema().getIndexState( index ), equalTo( Schema.IndexState.ONLINE ) );
+            }
+        }
+    }
+
+    @Test
+    public void batched_statements_each_get_a_result()
+    {
+        // given
+        Block block = Block.getBlock( BATCHED_QUERIES );
+
+        // when
+        String output = block.process( state );
+
+        // then
+        assertThat( output, allOf( containsString( "Alice" ), containsString( "Carol" ) ) );
+        assertThat( state.latestResult.query, containsString( "count(n)" ) );
+        assertThat( state.latestResult.text, containsString( "3" ) );
+    }
+
+    @Test
+    public void batched_schema_change_is_committed_before_the_next_statement()
+    {
+        // given
+        Block block = Block.getBlock( BATCHED_SCHEMA_CHANGE );
+
+        // when
+        block.process( state );
+
+        // then
+        assertThat( state.latestResult.text, containsString( "Alice" ) );
+        try ( Transaction tx = state.graphOps.beginTx() )
+        {
+            for ( IndexDefinition index : tx.schema().getIndexes() )
+            {
+                assertThat( tx.schema().getIndexState( index ), equalTo( Schema.IndexState.ONLINE ) );
+            }
+        }
+    }
+
+    @Test
+    public void batched_schema_change_after_data_runs_in_its_own_transaction()
+    {
+        // given
+        Block block = Block.getBlock( BATCHED_DATA_THEN_SCHEMA_CHANGE );
+
+        // when
+        block.process( state );
+
+        // then
+        assertThat( state.latestResult.text, containsString( "2" ) );
+        try ( Transaction tx = state.graphOps.beginTx() )
+        {
+            assertThat( tx.schema().getIndexes().iterator().hasNext(), equalTo( true ) );
+        }
+    }
+
+    @Test
+    public void batched_statement_failure_names_the_statement()
+    {
+        Block block = Block.getBlock( FAILING_BATCH );
+        expectedException.expectMessage( allOf( containsString( "Statement 2" ), containsString( "CREATE RETURN n;" ) ) );
+        block.process( state );
+    }
+
+    @Test
+    public void closing_the_state_closes_prepared_sql_statements() throws SQLException
+    {
+        // given
+        PreparedStatement statement = state.prepareSql( "VALUES(1)" );
+
+        // when
+        state.close();
+
+        // then
+        assertThat( statement.isClosed(), equalTo( true ) );
+        assertThat( state.sqlDatabase.isClosed(), equalTo( false ) );
+    }
+
+    @Test
+    public void sql_columns_grow_to_fit_values()
+    {
+        // when
+        Block.getBlock( LONG_SQL_VALUE ).process( state );
+        String table = state.latestSqlResult.text;
+
+        // then
+        assertThat( table, containsString( "| a value that does not fit in the default column width |" ) );
+        assertThat( table, containsString( "1 rows" ) );
+    }
+
+    @Test
+    public void sql_rows_beyond_limit_are_counted_but_not_shown() throws SQLException
+    {
+        // given
+        withSqlRowLimit( 2 );
+
+        // when
+        Block.getBlock( MANY_SQL_ROWS ).process( state );
+        String table = Block.getBlock( singletonList( "// sqltable" ) ).process( state );
+
+        // then
+        assertThat( table, allOf( containsString( "| 2 " ), not( containsString( "| 3 " ) ) ) );
+        assertThat( table, allOf( containsString( "2 more rows not shown" ), containsString( "4 rows" ) ) );
+    }
+
+    @Test
+    public void sql_rows_beyond_limit_are_still_tested() throws SQLException
+    {
+        // given
+        withSqlRowLimit( 2 );
+        Block.getBlock( MANY_SQL_ROWS ).process( state );
+        Block test = Block.getBlock( Arrays.asList( TEST_BLOCK_START, TEST_BLOCK_MARKER, "| 4 ", "4 rows", TEST_BLOCK_MARKER ) );
+
+        // when
+        String output = test.process( state );
+
+        // then
+        assertThat( output, equalTo( "" ) );
+        assertThat( state.latestSqlResult.text, not( containsString( "not shown" ) ) );
+    }
+
+    private void withSqlRowLimit( int rowLimit ) throws SQLException
+    {
+        state.close();
+        state = new State( graphOps, state.sqlDatabase, null, "", new GraphImages(), new SqlTableRenderer( 2, rowLimit ) );
+    }
+
+    @Test
+    public void queryTestFailureReportsClosestMatch()
+    {
+        Block.getBlock( ADAM_QUERY ).process( state );
+        Block block = Block.getBlock( Arrays.asList( TEST_BLOCK_START, TEST_BLOCK_MARKER, "Adam", "\"Adams\"",
+                TEST_BLOCK_MARKER ) );
+        expectedException.expect( TestFailureException.class );
+        expectedException.expectMessage( allOf( containsString( "doesn't contain the string '\"Adams\"'" ),
+                containsString( "Closest match: '" ), not( containsString( "string 'Adam'" ) ) ) );
+        block.process( state );
+    }
+
     @Test
     public void qurey_with_noexec()
     {
@@ -288,6 +484,53 @@ public class BlockTypeTest
         assertThat( result.relationshipIds.size(), equalTo( 1 ) );
     }
 
+    @Test
+    public void query_extracts_entity_ids_from_lists_and_maps()
+    {
+        // given
+        Block block = Block.getBlock( NESTED_ENTITIES );
+
+        // when
+        block.process( state );
+        Result result = state.latestResult;
+
+        // then
+        assertThat( result.nodeIds.size(), equalTo( 2 ) );
+        assertThat( result.relationshipIds.size(), equalTo( 1 ) );
+    }
+
+    @Test
+    public void identical_graphs_share_one_image()
+    {
+        try ( Transaction transaction = graphOps.beginTx() )
+        {
+            transaction.execute( "CREATE (n:Person {name: 'Adam'});" );
+            transaction.commit();
+        }
+        String first = Block.getBlock( singletonList( "// graph:first" ) ).process( state );
+        String second = Block.getBlock( singletonList( "// graph:second" ) ).process( state );
+
+        assertThat( first, allOf( startsWith( "[\"dot\", \"cypherdoc-first-" ), containsString( "Adam" ) ) );
+        String fileName = first.substring( "[\"dot\", \"".length(), first.indexOf( ".svg" ) + 4 );
+        assertThat( second, equalTo( "image::" + fileName + "[]\n" ) );
+    }
+
+    @Test
+    public void identical_graphs_in_another_document_are_rendered_under_the_same_name()
+    {
+        try ( Transaction transaction = graphOps.beginTx() )
+        {
+            transaction.execute( "CREATE (n:Person {name: 'Adam'});" );
+            transaction.commit();
+        }
+        State otherDocument = new State( graphOps, state.sqlDatabase, null, "", state.graphImages,
+                state.sqlTableRenderer );
+        String first = Block.getBlock( singletonList( "// graph:first" ) ).process( state );
+        String second = Block.getBlock( singletonList( "// graph:second" ) ).process( otherDocument );
+
+        assertThat( second, equalTo( first ) );
+    }
+
     @Test
     public void graphWithoutId()
     {
@@ -380,4 +623,38 @@ public class BlockTypeTest
         assertThat( fileQuery.getValue(), containsString( "file:/dev/null/my_file.csv" ) );
         assertThat( httpQuery.getValue(), containsString( "http://myurl/my_file.csv" ) );
     }
+
+    @Test
+    public void should_pass_filenames_as_parameters()
+    {
+        assumeFalse( SystemUtils.IS_OS_WINDOWS );
+        // given
+        List<String> myQuery = Arrays.asList( "[source, cypher]", "----", "LOAD CSV FROM \"my_file.csv\" AS line",
+                "RETURN line;", "----" );
+        GraphDatabaseFacade graph = mock( GraphDatabaseFacade.class );
+        final Transaction transaction = mock( Transaction.class );
+        when( graph.beginTx() ).thenReturn( transaction );
+        Block block = new Block( myQuery, BlockType.CYPHER );
+        org.neo4j.graphdb.Result result = mock( org.neo4j.graphdb.Result.class );
+        when( result.getQueryStatistics() ).thenReturn( mock( org.neo4j.graphdb.QueryStatistics.class ) );
+        ArgumentCaptor<String> fileQuery = ArgumentCaptor.forClass( String.class );
+        @SuppressWarnings( "unchecked" )
+        ArgumentCaptor<Map<String,Object>> parameters = ArgumentCaptor.forClass( Map.class );
+
+        when( transaction.execute( fileQuery.capture(), parameters.capture() ) ).thenReturn( result );
+
+        state = spy( new State( graph, null, new File( "/dev/null" ), "http://myurl" ) );
+        doReturn( "apa" ).when( state ).prettify( any( String.class ) );
+        state.parameterizeFiles = true;
+        state.knownFiles.add( "my_file.csv" );
+
+        // when
+        block.process( state );
+        block.process( state );
+
+        // then
+        assertThat( fileQuery.getValue(), containsString( "LOAD CSV FROM $cypherdocFile0 AS line" ) );
+        assertThat( parameters.getValue().get( "cypherdocFile0" ), equalTo( "file:/dev/null/my_file.csv" ) );
+        assertThat( fileQuery.getAllValues().get( 0 ), equalTo( fileQuery.getAllValues().get( 1 ) ) );
+    }
 }
@@ -31,11 +31,16 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.Assert.fail;
 
 public class CypherDocTest
@@ -89,6 +94,28 @@ public class CypherDocTest
         }
     }
 
+    @Test
+    public void failingDocumentsLeaveNoSnapshotsBehind() throws Exception
+    {
+        // given
+        String content = readFileToString( resourceFile( "/failing-query.asciidoc" ) );
+        Set<Path> before = temporarySnapshots();
+
+        // when
+        try
+        {
+            CypherDoc.parse( content, null, "http://url/" );
+            fail( "expected exception" );
+        }
+        // then
+        catch ( TestFailureException e )
+        {
+            Set<Path> after = temporarySnapshots();
+            after.removeAll( before );
+            assertThat( after, empty() );
+        }
+    }
+
     @Test
     public void fullDocumentParsing() throws IOException
     {
@@ -131,6 +158,26 @@ public class CypherDocTest
         String output = CypherDoc.parse( content, null, "http://url/" );
     }
 
+    @Test
+    public void repeated_queries_hit_the_plan_cache()
+    {
+        String content = String.join( CypherDoc.EOL, "= Title =", "", "[source,cypher]", "----", "CREATE (n:Person {name: 'Adam'});",
+                "----", "", "[source,cypher]", "----", "CREATE (n:Person {name: 'Adam'});", "----", "" );
+        PlanCacheStatistics planCache = new PlanCacheStatistics();
+
+        CypherDoc.parse( content, null, "http://url/", new GraphImages(), planCache, DatabasePool.onDemand() );
+
+        assertThat( planCache.hits(), greaterThanOrEqualTo( 1L ) );
+    }
+
+    private static Set<Path> temporarySnapshots() throws IOException
+    {
+        try ( Stream<Path> files = Files.list( Paths.get( System.getProperty( "java.io.tmpdir" ) ) ) )
+        {
+            return files.filter( file -> file.getFileName().toString().startsWith( "cypherdoc-" ) ).collect( Collectors.toSet() );
+        }
+    }
+
     private String readFileToString( Path file ) throws IOException
     {
         String delimiter = System.getProperty( "os.name" ).toLowerCase().startsWith( "windows" ) ? "\r\n" : "\n";
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.doc.cypherdoc;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+public class DaemonTest
+{
+    // the polling watch service some platforms fall back to takes seconds to notice a change, but never this long
+    private static final long WATCH_TIMEOUT_MILLIS = 60_000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path source;
+    private Path destination;
+    private DatabasePool databases;
+    private Daemon daemon;
+
+    @Before
+    public void setup() throws IOException
+    {
+        source = folder.newFolder( "source" ).toPath();
+        destination = folder.newFolder( "destination" ).toPath();
+        databases = DatabasePool.onDemand();
+        daemon = new Daemon( singletonList( source ), destination, "http://url", databases );
+    }
+
+    @After
+    public void tearDown()
+    {
+        databases.close();
+    }
+
+    @Test( timeout = WATCH_TIMEOUT_MILLIS )
+    public void changed_documents_are_detected() throws Exception
+    {
+        try ( WatchService watchService = daemon.watch() )
+        {
+            // when
+            Path document = write( source.resolve( "document.asciidoc" ), "Adam" );
+            Files.write( source.resolve( "notes.txt" ), "not a document".getBytes( StandardCharsets.UTF_8 ) );
+
+            // then
+            assertThat( daemon.awaitChanges( watchService ), equalTo( singleton( document ) ) );
+        }
+    }
+
+    @Test( timeout = WATCH_TIMEOUT_MILLIS )
+    public void documents_in_new_directories_are_detected() throws Exception
+    {
+        try ( WatchService watchService = daemon.watch() )
+        {
+            // given
+            Path nested = Files.createDirectory( source.resolve( "nested" ) );
+            assertThat( daemon.awaitChanges( watchService ), empty() );
+
+            // when
+            Path document = write( nested.resolve( "document.adoc" ), "Adam" );
+
+            // then
+            assertThat( daemon.awaitChanges( watchService ), equalTo( singleton( document ) ) );
+        }
+    }
+
+    @Test
+    public void changed_documents_are_transformed_again() throws Exception
+    {
+        // given
+        Path document = write( source.resolve( "document.asciidoc" ), "Adam" );
+        daemon.execute( document );
+        Path output = destination.resolve( "document.asciidoc" );
+        assertThat( read( output ), containsString( "Adam" ) );
+
+        // when
+        write( document, "Eve" );
+        daemon.execute( document );
+
+        // then
+        assertThat( read( output ), allOf( containsString( "Eve" ), not( containsString( "Adam" ) ) ) );
+    }
+
+    @Test
+    public void documents_in_nested_directories_are_transformed_into_the_nested_destination() throws Exception
+    {
+        // given
+        Path document = write( Files.createDirectory( source.resolve( "nested" ) ).resolve( "document.adoc" ), "Adam" );
+
+        // when
+        daemon.execute( document );
+
+        // then
+        assertThat( read( destination.resolve( "nested" ).resolve( "document.adoc" ) ), containsString( "Adam" ) );
+    }
+
+    private static Path write( Path document, String name ) throws IOException
+    {
+        String content = String.join( CypherDoc.EOL, "= Daemon =", "", "Text here.", "", "[source,cypher]", "----",
+                "CREATE (n:Person {name: '" + name + "'})", "RETURN n.name;", "----", "" );
+        return Files.write( document, content.getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    private static String read( Path output ) throws IOException
+    {
+        return new String( Files.readAllBytes( output ), StandardCharsets.UTF_8 );
+    }
+}
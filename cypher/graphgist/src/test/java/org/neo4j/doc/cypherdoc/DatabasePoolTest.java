@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2002-2020 "Neo4j,"
+ * Neo4j Sweden AB [http://neo4j.com]
+ *
+ * This file is part of Neo4j.
+ *
+ * Neo4j is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.neo4j.doc.cypherdoc;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+public class DatabasePoolTest
+{
+    @Test
+    public void warm_pool_hands_out_a_fresh_database_for_every_document()
+    {
+        try ( DatabasePool pool = new DatabasePool( 1 ) )
+        {
+            // given
+            DatabasePool.Database first = pool.take();
+            first.graphOps.executeTransactionally( "CREATE (:Person {name:'Adam'})" );
+            first.shutdown();
+            first.delete();
+
+            // when
+            DatabasePool.Database second = pool.take();
+
+            // then
+            try
+            {
+                assertThat( second.directory, not( equalTo( first.directory ) ) );
+                assertThat( nodeCount( second ), equalTo( 0L ) );
+            }
+            finally
+            {
+                second.shutdown();
+                second.delete();
+            }
+        }
+    }
+
+    @Test
+    public void deleting_a_database_that_was_shut_down_removes_its_directory()
+    {
+        // given
+        DatabasePool.Database database = DatabasePool.onDemand().take();
+        File directory = database.directory;
+        database.shutdown();
+        assertThat( directory.exists(), equalTo( true ) );
+
+        // when
+        database.delete();
+
+        // then
+        assertThat( directory.exists(), equalTo( false ) );
+    }
+
+    private static long nodeCount( DatabasePool.Database database )
+    {
+        return database.graphOps.executeTransactionally( "MATCH (n) RETURN count(n) AS count", Collections.emptyMap(),
+                result -> (Long) result.next().get( "count" ) );
+    }
+}
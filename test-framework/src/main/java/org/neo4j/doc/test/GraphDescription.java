@@ -28,11 +28,13 @@ import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.neo4j.graphdb.Entity;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Transaction;
@@ -177,43 +179,132 @@ public class GraphDescription implements GraphDefinition {
         return ( graph, title, documentation ) -> graph.create(holder.graphdb());
     }
 
+    /**
+     * Entities written per transaction, so that large fixtures don't build up one huge transaction state.
+     */
+    static final int BATCH_SIZE = 10_000;
+
     @Override
     public Map<String, Node> create(GraphDatabaseService graphdb) {
+        Compiled graph = compiled();
         Map<String, Node> result = new HashMap<>();
-        try (Transaction tx = graphdb.beginTx()) {
-            for (NODE def : nodes) {
-                Node node = init(tx.createNode(), def.setNameProperty() ? def.name() : null, def.properties());
-                for (LABEL label : def.labels()) {
-                    node.addLabel(label(label.value()));
+        long[] nodeIds = new long[graph.nodeNames.length];
+        int written = 0;
+        Transaction tx = graphdb.beginTx();
+        try {
+            for (int i = 0; i < nodeIds.length; i++) {
+                Node node = setProperties(tx.createNode(graph.nodeLabels[i]), graph.nodeProperties[i]);
+                nodeIds[i] = node.getId();
+                result.put(graph.nodeNames[i], node);
+                if (++written % BATCH_SIZE == 0) {
+                    tx = nextBatch(graphdb, tx);
                 }
-                result.put(def.name(), node);
             }
-            for (REL def : rels) {
-                init(result.get(def.start()).createRelationshipTo(result.get(def.end()),
-                        RelationshipType.withName(def.type())), def.setNameProperty() ? def.name() : null,
-                        def.properties());
+            for (int i = 0; i < graph.relTypes.length; i++) {
+                Node start = tx.getNodeById(nodeIds[graph.relStarts[i]]);
+                Node end = tx.getNodeById(nodeIds[graph.relEnds[i]]);
+                setProperties(start.createRelationshipTo(end, graph.relTypes[i]), graph.relProperties[i]);
+                if (++written % BATCH_SIZE == 0) {
+                    tx = nextBatch(graphdb, tx);
+                }
             }
             tx.commit();
+        } finally {
+            tx.close();
         }
         return result;
     }
 
-    private static <T extends Entity> T init( T entity, String name, PROP[] properties ) {
-        for (PROP prop : properties) {
-            PropType tpe = prop.type();
-            switch (tpe) {
-                case ARRAY:
-                    entity.setProperty(prop.key(), tpe.convert(prop.componentType(), prop.value()));
-                    break;
-                default:
-                    entity.setProperty(prop.key(), prop.type().convert(prop.value()));
-            }
+    private static Transaction nextBatch(GraphDatabaseService graphdb, Transaction tx) {
+        tx.commit();
+        tx.close();
+        return graphdb.beginTx();
+    }
+
+    private static <T extends Entity> T setProperties(T entity, Map<String, Object> properties) {
+        for (Map.Entry<String, Object> property : properties.entrySet()) {
+            entity.setProperty(property.getKey(), property.getValue());
         }
-        if (name != null) {
-            entity.setProperty("name", name);
+        return entity;
+    }
+
+    private Compiled compiled() {
+        Compiled graph = compiled;
+        if (graph == null) {
+            graph = new Compiled(nodes, rels);
+            compiled = graph;
         }
+        return graph;
+    }
 
-        return entity;
+    /*
+     * The labels, relationship types and converted property values of the description, worked out once,
+     * since fixtures are usually created again for every test.
+     */
+    private static class Compiled {
+        private final String[] nodeNames;
+        private final Label[][] nodeLabels;
+        private final Map<String, Object>[] nodeProperties;
+        private final RelationshipType[] relTypes;
+        private final int[] relStarts;
+        private final int[] relEnds;
+        private final Map<String, Object>[] relProperties;
+
+        @SuppressWarnings("unchecked")
+        Compiled(NODE[] nodes, REL[] rels) {
+            Map<String, Integer> nodeIndexes = new HashMap<>();
+            nodeNames = new String[nodes.length];
+            nodeLabels = new Label[nodes.length][];
+            nodeProperties = new Map[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                NODE def = nodes[i];
+                nodeNames[i] = def.name();
+                nodeIndexes.put(def.name(), i);
+                LABEL[] labels = def.labels();
+                nodeLabels[i] = new Label[labels.length];
+                for (int j = 0; j < labels.length; j++) {
+                    nodeLabels[i][j] = label(labels[j].value());
+                }
+                nodeProperties[i] = properties(def.setNameProperty() ? def.name() : null, def.properties());
+            }
+            relTypes = new RelationshipType[rels.length];
+            relStarts = new int[rels.length];
+            relEnds = new int[rels.length];
+            relProperties = new Map[rels.length];
+            for (int i = 0; i < rels.length; i++) {
+                REL def = rels[i];
+                relTypes[i] = RelationshipType.withName(def.type());
+                relStarts[i] = indexOf(nodeIndexes, def.start());
+                relEnds[i] = indexOf(nodeIndexes, def.end());
+                relProperties[i] = properties(def.setNameProperty() ? def.name() : null, def.properties());
+            }
+        }
+
+        private static int indexOf(Map<String, Integer> nodeIndexes, String name) {
+            Integer index = nodeIndexes.get(name);
+            if (index == null) {
+                throw new IllegalArgumentException("Node \"" + name + "\" is not defined");
+            }
+            return index;
+        }
+
+        private static Map<String, Object> properties(String name, PROP[] properties) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (PROP prop : properties) {
+                PropType tpe = prop.type();
+                switch (tpe) {
+                    case ARRAY:
+                        result.put(prop.key(), tpe.convert(prop.componentType(), prop.value()));
+                        break;
+                    default:
+                        result.put(prop.key(), prop.type().convert(prop.value()));
+                }
+            }
+            if (name != null) {
+                result.put("name", name);
+            }
+            return result;
+        }
     }
 
     private static final PROP[] NO_PROPS = {};
@@ -228,6 +319,7 @@ public class GraphDescription implements GraphDefinition {
     };
     private final NODE[] nodes;
     private final REL[] rels;
+    private volatile Compiled compiled;
 
     public static GraphDescription create(String... definition) {
         Map<String, NODE> nodes = new HashMap<>();